@@ -0,0 +1,85 @@
+package rikka.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import rikka.core.compat.CollectionsCompat;
+import rikka.core.compat.Function;
+import rikka.core.compat.Predicate;
+
+/**
+ * Measures {@link CollectionsCompat#mapToList} and {@link CollectionsCompat#filterToList}
+ * against a hand-written loop.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CollectionsCompatBenchmark {
+
+    private static final Function<Integer, String> MAPPER = new Function<Integer, String>() {
+        @Override
+        public String apply(Integer input) {
+            return input.toString();
+        }
+    };
+
+    private static final Predicate<Integer> PREDICATE = new Predicate<Integer>() {
+        @Override
+        public boolean apply(Integer integer) {
+            return (integer & 1) == 0;
+        }
+    };
+
+    @Param({"16", "1024"})
+    public int size;
+
+    private List<Integer> source;
+
+    @Setup
+    public void setup() {
+        source = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            source.add(i);
+        }
+    }
+
+    @Benchmark
+    public List<String> mapToList() {
+        return CollectionsCompat.mapToList(source, MAPPER);
+    }
+
+    @Benchmark
+    public List<String> mapToList_loop() {
+        List<String> result = new ArrayList<>(source.size());
+        for (Integer element : source) {
+            result.add(MAPPER.apply(element));
+        }
+        return result;
+    }
+
+    @Benchmark
+    public List<Integer> filterToList() {
+        return CollectionsCompat.filterToList(source, PREDICATE);
+    }
+
+    @Benchmark
+    public List<Integer> filterToList_loop() {
+        List<Integer> result = new ArrayList<>();
+        for (Integer element : source) {
+            if (PREDICATE.apply(element)) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+}
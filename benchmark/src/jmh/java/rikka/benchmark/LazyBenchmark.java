@@ -0,0 +1,61 @@
+package rikka.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+import rikka.lazy.Lazy;
+import rikka.lazy.LazyInitializer;
+import rikka.lazy.SynchronizedLazy;
+import rikka.lazy.UnsafeLazy;
+
+/**
+ * Compares {@link SynchronizedLazy} with {@link UnsafeLazy}, both for reading an initialized
+ * value from several threads at once and for the cost of the first {@link Lazy#get()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LazyBenchmark {
+
+    private static final LazyInitializer<Object> INITIALIZER = new LazyInitializer<Object>() {
+        @Override
+        public Object invoke() {
+            return new Object();
+        }
+    };
+
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        final Lazy<Object> synchronizedLazy = new SynchronizedLazy<>(INITIALIZER);
+        final Lazy<Object> unsafeLazy = new UnsafeLazy<>(INITIALIZER);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object get_synchronizedLazy_contended(Shared shared) {
+        return shared.synchronizedLazy.get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object get_unsafeLazy_contended(Shared shared) {
+        return shared.unsafeLazy.get();
+    }
+
+    @Benchmark
+    public Object firstGet_synchronizedLazy() {
+        return new SynchronizedLazy<>(INITIALIZER).get();
+    }
+
+    @Benchmark
+    public Object firstGet_unsafeLazy() {
+        return new UnsafeLazy<>(INITIALIZER).get();
+    }
+}
@@ -0,0 +1,149 @@
+package rikka.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import rikka.io.BufferedLittleEndianDataInputStream;
+import rikka.io.LittleEndianDataInputStream;
+import rikka.io.LittleEndianDataOutputStream;
+
+/**
+ * Reads and writes {@code count} ints with the little-endian streams, compared with
+ * {@link DataInputStream}/{@link DataOutputStream} (big-endian) and a little-endian {@link ByteBuffer}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LittleEndianDataStreamBenchmark {
+
+    @Param({"1024", "65536"})
+    public int count;
+
+    private int[] values;
+    private byte[] littleEndian;
+    private byte[] bigEndian;
+    private ByteArrayOutputStream bytes;
+    private ByteBuffer buffer;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt();
+        }
+
+        ByteBuffer le = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer be = ByteBuffer.allocate(count * 4).order(ByteOrder.BIG_ENDIAN);
+        for (int value : values) {
+            le.putInt(value);
+            be.putInt(value);
+        }
+        littleEndian = le.array();
+        bigEndian = be.array();
+
+        bytes = new ByteArrayOutputStream(count * 4);
+        buffer = ByteBuffer.allocate(count * 4).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Benchmark
+    public int writeInt_littleEndianStream() throws IOException {
+        bytes.reset();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int writeInts_littleEndianStream() throws IOException {
+        bytes.reset();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        out.writeInts(values);
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int writeInt_dataOutputStream() throws IOException {
+        bytes.reset();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+        return bytes.size();
+    }
+
+    @Benchmark
+    public int writeInt_byteBuffer() {
+        buffer.clear();
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int readInt_littleEndianStream() throws IOException {
+        LittleEndianDataInputStream in = new LittleEndianDataInputStream(new ByteArrayInputStream(littleEndian));
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += in.readInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int readInt_bufferedLittleEndianStream() throws IOException {
+        BufferedLittleEndianDataInputStream in = new BufferedLittleEndianDataInputStream(new ByteArrayInputStream(littleEndian));
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += in.readInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int[] readInts_littleEndianStream() throws IOException {
+        LittleEndianDataInputStream in = new LittleEndianDataInputStream(new ByteArrayInputStream(littleEndian));
+        int[] result = new int[count];
+        in.readInts(result);
+        return result;
+    }
+
+    @Benchmark
+    public int readInt_dataInputStream() throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bigEndian));
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += in.readInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int readInt_byteBuffer() {
+        ByteBuffer in = ByteBuffer.wrap(littleEndian).order(ByteOrder.LITTLE_ENDIAN);
+        int sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += in.getInt();
+        }
+        return sum;
+    }
+}
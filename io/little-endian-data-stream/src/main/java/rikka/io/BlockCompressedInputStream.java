@@ -0,0 +1,326 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Reads a file written by {@link BlockCompressedOutputStream}.
+ * <p>
+ * {@link #seek(long)} moves to any uncompressed position, and only the blocks that are
+ * actually read get decompressed. With an {@link Executor}, the blocks after the current
+ * one are decompressed ahead of time in parallel, and {@link #readFully(long, byte[], int, int)}
+ * decompresses all blocks it touches in parallel. Compressed bytes are always read on the
+ * calling thread, only the inflating runs on the executor.
+ * <p>
+ * Usually wrapped in a {@link LittleEndianDataInputStream}. This class is not thread-safe.
+ */
+public class BlockCompressedInputStream extends InputStream {
+
+    private final LittleEndianRandomAccessReader file;
+    private final Executor executor;
+    private final int readAhead;
+
+    private final int blockSize;
+    private final int blockCount;
+    private final long length;
+    private final long[] blockOffsets;
+    private final int[] blockCompressedLengths;
+    private final int[] blockLengths;
+
+    // Blocks being decompressed on the executor
+    private final Map<Integer, Future<byte[]>> pending = new HashMap<>();
+
+    private byte[] current;
+    private int currentIndex = -1;
+    private long position;
+
+    public BlockCompressedInputStream(@NonNull File file) throws IOException {
+        this(new RandomAccessFile(file, "r").getChannel(), null, 0);
+    }
+
+    /**
+     * The channel will be closed when this stream is closed.
+     *
+     * @param executor  Executor to decompress blocks on, or null to decompress on the calling thread
+     * @param readAhead Number of blocks after the current one to decompress ahead of time
+     *                  on the executor
+     */
+    public BlockCompressedInputStream(@NonNull FileChannel channel, @Nullable Executor executor, int readAhead) throws IOException {
+        if (readAhead < 0) {
+            throw new IllegalArgumentException("readAhead < 0");
+        }
+        this.file = new LittleEndianRandomAccessReader(channel);
+        this.executor = executor;
+        this.readAhead = executor != null ? readAhead : 0;
+
+        try {
+            long fileLength = file.length();
+            long trailer = fileLength - BlockCompressedOutputStream.TRAILER_SIZE;
+            if (trailer < 0
+                    || file.readIntAt(trailer + 28) != BlockCompressedOutputStream.MAGIC
+                    || file.readIntAt(trailer + 24) != BlockCompressedOutputStream.VERSION) {
+                throw new IOException("not a block-compressed file");
+            }
+
+            file.seek(trailer);
+            blockSize = file.readInt();
+            blockCount = file.readInt();
+            long indexOffset = file.readLong();
+            length = file.readLong();
+            if (blockSize <= 0 || blockCount < 0
+                    || indexOffset + (long) blockCount * BlockCompressedOutputStream.INDEX_ENTRY_SIZE != trailer) {
+                throw new IOException("corrupt block index");
+            }
+
+            blockOffsets = new long[blockCount];
+            blockCompressedLengths = new int[blockCount];
+            blockLengths = new int[blockCount];
+            file.seek(indexOffset);
+            for (int i = 0; i < blockCount; i++) {
+                blockOffsets[i] = file.readLong();
+                blockCompressedLengths[i] = file.readInt();
+                blockLengths[i] = file.readInt();
+            }
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Uncompressed length of the data.
+     */
+    public long length() {
+        return length;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Move to an uncompressed position. Nothing is decompressed until the next read.
+     */
+    public void seek(long newPosition) {
+        if (newPosition < 0 || newPosition > length) {
+            throw new IllegalArgumentException("position " + newPosition + " out of range [0, " + length + "]");
+        }
+        position = newPosition;
+    }
+
+    private byte[] readCompressed(int index) throws IOException {
+        byte[] compressed = new byte[blockCompressedLengths[index]];
+        file.readFullyAt(blockOffsets[index], compressed, 0, compressed.length);
+        return compressed;
+    }
+
+    private static byte[] inflate(byte[] compressed, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] block = new byte[length];
+            int n = 0;
+            while (n < length) {
+                int count = inflater.inflate(block, n, length - n);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += count;
+            }
+            if (n != length) {
+                throw new ZipException("corrupt block, got " + n + " bytes; excepted " + length + " bytes");
+            }
+            return block;
+        } catch (DataFormatException e) {
+            throw new ZipException("corrupt block: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private Future<byte[]> submit(int index) throws IOException {
+        Future<byte[]> future = pending.get(index);
+        if (future == null) {
+            final byte[] compressed = readCompressed(index);
+            final int blockLength = blockLengths[index];
+            FutureTask<byte[]> task = new FutureTask<>(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws IOException {
+                    return inflate(compressed, blockLength);
+                }
+            });
+            executor.execute(task);
+            pending.put(index, task);
+            future = task;
+        }
+        return future;
+    }
+
+    private static byte[] await(Future<byte[]> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while decompressing");
+        }
+    }
+
+    private byte[] block(int index) throws IOException {
+        if (index == currentIndex) {
+            return current;
+        }
+
+        byte[] block;
+        if (executor == null) {
+            block = inflate(readCompressed(index), blockLengths[index]);
+        } else {
+            // Drop blocks outside of the read-ahead window
+            Iterator<Map.Entry<Integer, Future<byte[]>>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Future<byte[]>> entry = iterator.next();
+                int key = entry.getKey();
+                if (key < index || key > index + readAhead) {
+                    entry.getValue().cancel(false);
+                    iterator.remove();
+                }
+            }
+
+            Future<byte[]> future = submit(index);
+            for (int i = index + 1; i <= index + readAhead && i < blockCount; i++) {
+                submit(i);
+            }
+            block = await(future);
+            pending.remove(index);
+        }
+
+        current = block;
+        currentIndex = index;
+        return block;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= length) {
+            return -1;
+        }
+        byte[] block = block((int) (position / blockSize));
+        int b = block[(int) (position % blockSize)] & 0xFF;
+        position++;
+        return b;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        if ((off | len) < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + b.length);
+        }
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+
+        byte[] block = block((int) (position / blockSize));
+        int offset = (int) (position % blockSize);
+        int n = Math.min(len, block.length - offset);
+        System.arraycopy(block, offset, b, off, n);
+        position += n;
+        return n;
+    }
+
+    /**
+     * Read exactly {@code len} bytes at the uncompressed {@code offset} without moving the
+     * position. All blocks in the range are decompressed in parallel if there is an executor.
+     */
+    public void readFully(long offset, @NonNull byte[] b, int off, int len) throws IOException {
+        if ((off | len) < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + b.length);
+        }
+        if (offset < 0 || len > length - offset) {
+            throw new EOFException("range " + offset + "+" + len + " out of length " + length);
+        }
+        if (len == 0) {
+            return;
+        }
+
+        int first = (int) (offset / blockSize);
+        int last = (int) ((offset + len - 1) / blockSize);
+        if (executor != null) {
+            for (int i = first; i <= last; i++) {
+                if (i != currentIndex) {
+                    submit(i);
+                }
+            }
+        }
+
+        for (int i = first; i <= last; i++) {
+            byte[] block;
+            if (i == currentIndex) {
+                block = current;
+            } else if (executor != null) {
+                block = await(pending.remove(i));
+            } else {
+                block = inflate(readCompressed(i), blockLengths[i]);
+            }
+
+            int start = (int) (offset % blockSize);
+            int n = Math.min(len, block.length - start);
+            System.arraycopy(block, start, b, off, n);
+            offset += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        if (currentIndex < 0 || position / blockSize != currentIndex) {
+            return 0;
+        }
+        return (int) (current.length - position % blockSize);
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<byte[]> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+        current = null;
+        currentIndex = -1;
+        file.close();
+    }
+}
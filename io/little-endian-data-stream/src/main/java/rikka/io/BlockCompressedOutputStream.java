@@ -0,0 +1,182 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+/**
+ * Splits the written data into fixed-size blocks and compresses each one separately with
+ * {@link Deflater}, so {@link BlockCompressedInputStream} can later seek to any position
+ * and only decompress the blocks it touches.
+ * <p>
+ * Usually wrapped in a {@link LittleEndianDataOutputStream}:
+ * <pre>
+ * LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(
+ *         new BlockCompressedOutputStream(new FileOutputStream(file)));
+ * </pre>
+ * <p>
+ * The file layout is the compressed blocks, followed by the block index and a trailer,
+ * all in little-endian:
+ * <pre>
+ * block index: (long offset, int compressedLength, int length) for each block
+ * trailer:     int blockSize, int blockCount, long indexOffset, long length, int version, int magic
+ * </pre>
+ * The index is written by {@link #close()}, a stream that is not closed is not readable.
+ */
+public class BlockCompressedOutputStream extends OutputStream {
+
+    static final int MAGIC = 0x4B4C4252; // "RBLK"
+    static final int VERSION = 1;
+    static final int INDEX_ENTRY_SIZE = 16;
+    static final int TRAILER_SIZE = 32;
+
+    private static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+    private final OutputStream out;
+    private final Deflater deflater;
+    private final byte[] block;
+    private byte[] compressed;
+    private int count;
+
+    private long[] blockOffsets = new long[16];
+    private int[] blockCompressedLengths = new int[16];
+    private int[] blockLengths = new int[16];
+    private int blockCount;
+
+    private long compressedPosition;
+    private long length;
+    private boolean closed;
+
+    public BlockCompressedOutputStream(@NonNull OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param blockSize Uncompressed size of each block, the last block may be smaller
+     * @param level     Compression level of {@link Deflater}
+     */
+    public BlockCompressedOutputStream(@NonNull OutputStream out, int blockSize, int level) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("blockSize <= 0");
+        }
+        this.out = out;
+        this.deflater = new Deflater(level);
+        this.block = new byte[blockSize];
+        this.compressed = new byte[blockSize / 2 + 64];
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream closed");
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == block.length) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        if ((off | len) < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + b.length);
+        }
+
+        while (len > 0) {
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+
+            if (count == block.length) {
+                writeBlock();
+            }
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, count);
+        deflater.finish();
+
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        out.write(compressed, 0, compressedLength);
+
+        if (blockCount == blockOffsets.length) {
+            int capacity = blockCount * 2;
+            blockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            blockCompressedLengths = Arrays.copyOf(blockCompressedLengths, capacity);
+            blockLengths = Arrays.copyOf(blockLengths, capacity);
+        }
+        blockOffsets[blockCount] = compressedPosition;
+        blockCompressedLengths[blockCount] = compressedLength;
+        blockLengths[blockCount] = count;
+        blockCount++;
+
+        compressedPosition += compressedLength;
+        length += count;
+        count = 0;
+    }
+
+    /**
+     * Flush the underlying stream. The current partial block is not written until it is
+     * full or the stream is closed, so block boundaries stay at multiples of the block size.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Write the last block, the block index and the trailer, then close the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try {
+            if (count > 0) {
+                writeBlock();
+            }
+
+            long indexOffset = compressedPosition;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(blockCount * INDEX_ENTRY_SIZE + TRAILER_SIZE);
+            LittleEndianDataOutputStream index = new LittleEndianDataOutputStream(bytes);
+            for (int i = 0; i < blockCount; i++) {
+                index.writeLong(blockOffsets[i]);
+                index.writeInt(blockCompressedLengths[i]);
+                index.writeInt(blockLengths[i]);
+            }
+            index.writeInt(block.length);
+            index.writeInt(blockCount);
+            index.writeLong(indexOffset);
+            index.writeLong(length);
+            index.writeInt(VERSION);
+            index.writeInt(MAGIC);
+            bytes.writeTo(out);
+            out.flush();
+        } finally {
+            closed = true;
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A {@link LittleEndianDataInputStream} that reads the underlying stream in windows of
+ * {@code bufferSize} bytes and decodes primitives directly from its own array.
+ * <p>
+ * The underlying stream is only touched when the window is exhausted, so reading many
+ * small fields costs one {@link InputStream#read(byte[], int, int)} call per window.
+ */
+public class BufferedLittleEndianDataInputStream extends LittleEndianDataInputStream {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MIN_BUFFER_SIZE = MAX_VARLONG_SIZE;
+
+    protected final byte[] buf;
+    private final ByteBuffer window;
+
+    /**
+     * Index of the next byte to be read from {@link #buf}.
+     */
+    protected int pos;
+
+    /**
+     * Index one past the last valid byte in {@link #buf}.
+     */
+    protected int count;
+
+    public BufferedLittleEndianDataInputStream(@NonNull InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param bufferSize Size of the refill window, must be at least 10 bytes
+     */
+    public BufferedLittleEndianDataInputStream(@NonNull InputStream in, int bufferSize) {
+        super(in);
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize < " + MIN_BUFFER_SIZE);
+        }
+        this.buf = new byte[bufferSize];
+        this.window = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Make sure at least {@code n} unread bytes are in the window, moving the unread bytes
+     * to the start of the array and refilling from the underlying stream if needed.
+     *
+     * @return false if the stream ended before {@code n} bytes are available
+     */
+    protected final boolean fill(int n) throws IOException {
+        int remaining = count - pos;
+        if (remaining >= n) {
+            return true;
+        }
+
+        if (remaining > 0 && pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, remaining);
+        }
+        pos = 0;
+        count = remaining;
+
+        while (count < n) {
+            int read = in.read(buf, count, buf.length - count);
+            if (read < 0) {
+                return false;
+            }
+            count += read;
+        }
+        return true;
+    }
+
+    private void require(int n) throws IOException {
+        if (!fill(n)) {
+            throw new EOFException("reached end after reading " + (count - pos) + " bytes; excepted " + n + " bytes");
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos >= count && !fill(1)) {
+            return -1;
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(@NonNull byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+
+        int remaining = count - pos;
+        if (remaining <= 0) {
+            // Large reads bypass the window to avoid a useless copy
+            if (len >= buf.length) {
+                return in.read(b, off, len);
+            }
+            if (!fill(1)) {
+                return -1;
+            }
+            remaining = count - pos;
+        }
+
+        int n = Math.min(remaining, len);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        int n = Math.min(count - pos, len);
+        if (n > 0) {
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+        }
+
+        while (n < len) {
+            int read = read(b, off + n, len - n);
+            if (read < 0)
+                throw new EOFException("reached end after reading " + n + " bytes; excepted " + len + " bytes");
+            n += read;
+        }
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+
+        int remaining = count - pos;
+        if (remaining <= 0) {
+            return in.skip(n);
+        }
+
+        long skipped = Math.min(remaining, n);
+        pos += (int) skipped;
+        return skipped;
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int total = 0;
+        int cur;
+
+        while ((total < n) && ((cur = (int) skip(n - total)) > 0)) {
+            total += cur;
+        }
+
+        return total;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (count - pos) + in.available();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        if (pos >= count) {
+            require(1);
+        }
+        return buf[pos++] & 0xFF;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        require(2);
+        int v = window.getShort(pos) & 0xFFFF;
+        pos += 2;
+        return v;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        int v = window.getInt(pos);
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(8);
+        long v = window.getLong(pos);
+        pos += 8;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedVarInt() throws IOException {
+        if (count - pos < MAX_VARINT_SIZE) {
+            // Not enough bytes in the window, decode byte by byte so that only the bytes of
+            // this varint are waited for, the stream might not have more yet
+            return super.readUnsignedVarInt();
+        }
+
+        byte[] b = buf;
+        int p = pos;
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int v = b[p++];
+            result |= (v & 0x7F) << shift;
+            if (v >= 0) {
+                pos = p;
+                return result;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    @Override
+    public long readUnsignedVarLong() throws IOException {
+        if (count - pos < MAX_VARLONG_SIZE) {
+            return super.readUnsignedVarLong();
+        }
+
+        byte[] b = buf;
+        int p = pos;
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int v = b[p++];
+            result |= (long) (v & 0x7F) << shift;
+            if (v >= 0) {
+                pos = p;
+                return result;
+            }
+        }
+        throw new IOException("malformed varlong");
+    }
+}
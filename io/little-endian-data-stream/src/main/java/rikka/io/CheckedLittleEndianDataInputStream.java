@@ -0,0 +1,161 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * Reads the frames written by {@link CheckedLittleEndianDataOutputStream} and verifies
+ * the checksum of each frame before any of its data is returned.
+ * <p>
+ * The checksum is updated once over each whole frame. Decoding works like
+ * {@link BufferedLittleEndianDataInputStream}, so single-byte reads never go through
+ * another stream layer. A mismatch throws {@link IOException}, and so does the end of the
+ * underlying stream before the empty frame that marks the end, which is {@link EOFException}.
+ */
+public class CheckedLittleEndianDataInputStream extends BufferedLittleEndianDataInputStream {
+
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Verify the frames with {@link CRC32C}.
+     */
+    @RequiresApi(26)
+    public CheckedLittleEndianDataInputStream(@NonNull InputStream in) {
+        this(in, new CRC32C(), DEFAULT_MAX_FRAME_SIZE);
+    }
+
+    /**
+     * @param checksum     Checksum used by the writer
+     * @param maxFrameSize Frames larger than this are treated as corrupt
+     */
+    public CheckedLittleEndianDataInputStream(@NonNull InputStream in, @NonNull Checksum checksum, int maxFrameSize) {
+        super(new FrameInputStream(in, checksum, maxFrameSize));
+    }
+
+    private static final class FrameInputStream extends InputStream {
+
+        private final InputStream in;
+        private final Checksum checksum;
+        private final int maxFrameSize;
+        private final byte[] header = new byte[4];
+
+        private byte[] frame = new byte[CheckedLittleEndianDataOutputStream.DEFAULT_FRAME_SIZE + 4];
+        private int pos;
+        private int count;
+        private long frameIndex;
+        private boolean ended;
+
+        FrameInputStream(InputStream in, Checksum checksum, int maxFrameSize) {
+            this.in = in;
+            this.checksum = checksum;
+            this.maxFrameSize = maxFrameSize;
+        }
+
+        private static int getInt(byte[] b, int off) {
+            return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8 | (b[off + 2] & 0xFF) << 16 | b[off + 3] << 24;
+        }
+
+        /**
+         * @return number of bytes read, less than {@code len} only at the end of the stream
+         */
+        private int readFully(byte[] b, int off, int len) throws IOException {
+            int n = 0;
+            while (n < len) {
+                int count = in.read(b, off + n, len - n);
+                if (count < 0) {
+                    break;
+                }
+                n += count;
+            }
+            return n;
+        }
+
+        /**
+         * @return false at the end of the stream
+         */
+        private boolean readFrame() throws IOException {
+            if (ended) {
+                return false;
+            }
+
+            int n = readFully(header, 0, 4);
+            if (n == 0) {
+                throw new EOFException("missing end of stream frame after frame " + (frameIndex - 1));
+            }
+            if (n < 4) {
+                throw new EOFException("truncated header of frame " + frameIndex);
+            }
+
+            int length = getInt(header, 0);
+            if (length < 0 || length > maxFrameSize) {
+                throw new IOException("corrupt frame " + frameIndex + ", length " + length);
+            }
+            if (frame.length < length + 4) {
+                frame = new byte[length + 4];
+            }
+            if (readFully(frame, 0, length + 4) < length + 4) {
+                throw new EOFException("truncated frame " + frameIndex);
+            }
+
+            checksum.reset();
+            checksum.update(frame, 0, length);
+            int expected = getInt(frame, length);
+            if ((int) checksum.getValue() != expected) {
+                throw new IOException("checksum mismatch in frame " + frameIndex);
+            }
+
+            frameIndex++;
+            pos = 0;
+            count = length;
+            if (length == 0) {
+                // Only written by close
+                ended = true;
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (pos >= count) {
+                if (!readFrame()) {
+                    return -1;
+                }
+            }
+            return frame[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(@NonNull byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (pos >= count) {
+                if (!readFrame()) {
+                    return -1;
+                }
+            }
+
+            int n = Math.min(len, count - pos);
+            System.arraycopy(frame, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return count - pos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32C;
+import java.util.zip.Checksum;
+
+/**
+ * A {@link LittleEndianDataOutputStream} that groups the written data into frames and
+ * appends a checksum to each frame.
+ * <p>
+ * Data is collected in a frame buffer, and the checksum is updated once over the whole
+ * frame when it is written, instead of once per byte like {@link java.util.zip.CheckedOutputStream}.
+ * Each frame is written with one call to the underlying stream:
+ * <pre>
+ * int length, length bytes, int checksum
+ * </pre>
+ * {@link #flush()} writes the current frame even if it is not full. {@link #close()} also
+ * writes an empty frame, which marks the end of the stream, so that a stream cut at a
+ * frame boundary is detected as truncated by the reader.
+ *
+ * @see CheckedLittleEndianDataInputStream
+ */
+public class CheckedLittleEndianDataOutputStream extends LittleEndianDataOutputStream {
+
+    static final int DEFAULT_FRAME_SIZE = 64 * 1024;
+
+    /**
+     * Checksum the frames with {@link CRC32C}.
+     */
+    @RequiresApi(26)
+    public CheckedLittleEndianDataOutputStream(@NonNull OutputStream out) {
+        this(out, new CRC32C(), DEFAULT_FRAME_SIZE);
+    }
+
+    /**
+     * @param checksum  Checksum for the frames, the reader must use the same algorithm
+     * @param frameSize Maximum number of data bytes in each frame
+     */
+    public CheckedLittleEndianDataOutputStream(@NonNull OutputStream out, @NonNull Checksum checksum, int frameSize) {
+        super(new FrameOutputStream(out, checksum, frameSize));
+    }
+
+    private static final class FrameOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final Checksum checksum;
+
+        // Frame length, data and checksum, so a frame is written in one call
+        private final byte[] frame;
+        private final int frameSize;
+        private int count;
+        private boolean closed;
+
+        FrameOutputStream(OutputStream out, Checksum checksum, int frameSize) {
+            if (frameSize <= 0) {
+                throw new IllegalArgumentException("frameSize <= 0");
+            }
+            this.out = out;
+            this.checksum = checksum;
+            this.frame = new byte[frameSize + 8];
+            this.frameSize = frameSize;
+        }
+
+        private static void putInt(byte[] b, int off, int v) {
+            b[off] = (byte) v;
+            b[off + 1] = (byte) (v >> 8);
+            b[off + 2] = (byte) (v >> 16);
+            b[off + 3] = (byte) (v >> 24);
+        }
+
+        private void writeFrame() throws IOException {
+            checksum.reset();
+            checksum.update(frame, 4, count);
+
+            putInt(frame, 0, count);
+            putInt(frame, 4 + count, (int) checksum.getValue());
+            out.write(frame, 0, count + 8);
+            count = 0;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            frame[4 + count++] = (byte) b;
+            if (count == frameSize) {
+                writeFrame();
+            }
+        }
+
+        @Override
+        public void write(@NonNull byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, frameSize - count);
+                System.arraycopy(b, off, frame, 4 + count, n);
+                count += n;
+                off += n;
+                len -= n;
+
+                if (count == frameSize) {
+                    writeFrame();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeFrame();
+            }
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (count > 0) {
+                    writeFrame();
+                }
+                // The end of stream frame
+                writeFrame();
+                out.flush();
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package rikka.io;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Reads the formats written by {@link LittleEndianDataOutputStream} that are not single
+ * primitives from any {@link DataInput}, shared by the stream, the mapped reader and the
+ * random access reader.
+ * <p>
+ * An instance owns the buffers reused by its reader, so it is not thread-safe.
+ */
+final class DataInputHelper {
+
+    private static final int BLOCK_SIZE = 8192;
+
+    // Scratch space for the bulk array reads, allocated on first use
+    private ByteBuffer block;
+
+    // Reused by readString and readLine, grown on demand
+    private byte[] stringBytes;
+    private char[] stringChars;
+
+    /**
+     * Read an unsigned LEB128 varint of at most 5 bytes.
+     */
+    static int readUnsignedVarInt(DataInput in) throws IOException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed varint");
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most 10 bytes.
+     */
+    static long readUnsignedVarLong(DataInput in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("malformed varlong");
+    }
+
+    static int decodeZigZag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static long decodeZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    void readShorts(DataInput in, short[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 2);
+            in.readFully(block.array(), 0, n * 2);
+            block.clear();
+            block.asShortBuffer().get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    void readChars(DataInput in, char[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 2);
+            in.readFully(block.array(), 0, n * 2);
+            block.clear();
+            block.asCharBuffer().get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    void readInts(DataInput in, int[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 4);
+            in.readFully(block.array(), 0, n * 4);
+            block.clear();
+            block.asIntBuffer().get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    void readLongs(DataInput in, long[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 8);
+            in.readFully(block.array(), 0, n * 8);
+            block.clear();
+            block.asLongBuffer().get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    void readFloats(DataInput in, float[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 4);
+            in.readFully(block.array(), 0, n * 4);
+            block.clear();
+            block.asFloatBuffer().get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    void readDoubles(DataInput in, double[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 8);
+            in.readFully(block.array(), 0, n * 8);
+            block.clear();
+            block.asDoubleBuffer().get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private ByteBuffer block() {
+        if (block == null) {
+            block = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return block;
+    }
+
+    private static void checkBounds(int length, int off, int len) {
+        if ((off | len) < 0 || len > length - off) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + length);
+        }
+    }
+
+    /**
+     * Read a line as described by {@link DataInput#readLine()}, each byte is converted
+     * to a char with the high byte zero.
+     * <p>
+     * Lines end with {@code '\n'} or {@code "\r\n"}. Unlike {@link java.io.DataInputStream},
+     * a {@code '\r'} alone does not end a line, because that needs the byte after it to be
+     * pushed back.
+     *
+     * @return the line without the line terminator, or null if the input ends before any byte
+     */
+    String readLine(DataInput in) throws IOException {
+        char[] chars = stringChars;
+        if (chars == null) {
+            stringChars = chars = new char[64];
+        }
+
+        int n = 0;
+        int c;
+        while ((c = readOrEnd(in)) >= 0 && c != '\n') {
+            if (n == chars.length) {
+                stringChars = chars = Arrays.copyOf(chars, chars.length * 2);
+            }
+            chars[n++] = (char) c;
+        }
+
+        if (c < 0 && n == 0) {
+            return null;
+        }
+        if (c == '\n' && n > 0 && chars[n - 1] == '\r') {
+            n--;
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static int readOrEnd(DataInput in) throws IOException {
+        try {
+            return in.readUnsignedByte();
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Read the bytes of a string written by
+     * {@link LittleEndianDataOutputStream#writeString(String)}, after its length.
+     * <p>
+     * The bytes and chars are decoded through arrays owned by this helper, the returned
+     * {@link String} is the only allocation once they are large enough.
+     */
+    String readString(DataInput in, int length) throws IOException {
+        if (length < 0) {
+            throw new UTFDataFormatException("malformed length " + (length & 0xFFFFFFFFL));
+        }
+
+        // The buffer grows as the bytes arrive, so a corrupt length cannot allocate more
+        // than twice the data actually in the input
+        byte[] bytes = stringBytes;
+        if (bytes == null) {
+            stringBytes = bytes = new byte[64];
+        }
+        int read = 0;
+        while (true) {
+            int end = Math.min(length, bytes.length);
+            in.readFully(bytes, read, end - read);
+            read = end;
+            if (read == length) {
+                break;
+            }
+            stringBytes = bytes = Arrays.copyOf(bytes, (int) Math.min(length, bytes.length * 2L));
+        }
+
+        char[] chars = stringChars;
+        if (chars == null || chars.length < length) {
+            stringChars = chars = new char[bytes.length];
+        }
+
+        int i = 0;
+        int n = 0;
+
+        // ASCII fast path
+        while (i < length && bytes[i] >= 0) {
+            chars[n++] = (char) bytes[i++];
+        }
+
+        while (i < length) {
+            int b = bytes[i++];
+            if (b >= 0) {
+                chars[n++] = (char) b;
+            } else if ((b & 0xE0) == 0xC0) {
+                int b2 = continuation(bytes, i++, length);
+                chars[n++] = (char) (((b & 0x1F) << 6) | b2);
+            } else if ((b & 0xF0) == 0xE0) {
+                int b2 = continuation(bytes, i++, length);
+                int b3 = continuation(bytes, i++, length);
+                chars[n++] = (char) (((b & 0x0F) << 12) | (b2 << 6) | b3);
+            } else if ((b & 0xF8) == 0xF0) {
+                int b2 = continuation(bytes, i++, length);
+                int b3 = continuation(bytes, i++, length);
+                int b4 = continuation(bytes, i++, length);
+                int codePoint = ((b & 0x07) << 18) | (b2 << 12) | (b3 << 6) | b4;
+                if (!Character.isSupplementaryCodePoint(codePoint)) {
+                    throw new UTFDataFormatException("malformed input around byte " + (i - 4));
+                }
+                // Character.highSurrogate/lowSurrogate require API 19
+                codePoint -= Character.MIN_SUPPLEMENTARY_CODE_POINT;
+                chars[n++] = (char) (Character.MIN_HIGH_SURROGATE + (codePoint >>> 10));
+                chars[n++] = (char) (Character.MIN_LOW_SURROGATE + (codePoint & 0x3FF));
+            } else {
+                throw new UTFDataFormatException("malformed input around byte " + (i - 1));
+            }
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static int continuation(byte[] bytes, int i, int length) throws UTFDataFormatException {
+        if (i >= length) {
+            throw new UTFDataFormatException("malformed input: partial character at end");
+        }
+        int b = bytes[i];
+        if ((b & 0xC0) != 0x80) {
+            throw new UTFDataFormatException("malformed input around byte " + i);
+        }
+        return b & 0x3F;
+    }
+}
@@ -0,0 +1,85 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct {@link ByteBuffer}s of the same size.
+ * <p>
+ * Allocating direct buffers is expensive, and their memory is only freed when they are
+ * garbage collected, so writers that need many short-lived buffers should share a pool.
+ * This class is thread-safe.
+ */
+public class DirectByteBufferPool {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_MAX_POOLED = 16;
+    private static final int MIN_BUFFER_SIZE = 16;
+
+    private static DirectByteBufferPool sDefault;
+
+    /**
+     * Get the process-wide pool of 64 KB buffers.
+     */
+    @NonNull
+    public static synchronized DirectByteBufferPool getDefault() {
+        if (sDefault == null) {
+            sDefault = new DirectByteBufferPool(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+        }
+        return sDefault;
+    }
+
+    private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+    private final int bufferSize;
+    private final int maxPooled;
+
+    /**
+     * @param bufferSize Capacity of each buffer, must be at least 16 bytes
+     * @param maxPooled  Maximum number of idle buffers kept for reuse
+     */
+    public DirectByteBufferPool(int bufferSize, int maxPooled) {
+        if (bufferSize < MIN_BUFFER_SIZE) {
+            throw new IllegalArgumentException("bufferSize < " + MIN_BUFFER_SIZE);
+        }
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Get a cleared little-endian buffer, allocating a new one if the pool is empty.
+     */
+    @NonNull
+    public ByteBuffer acquire() {
+        ByteBuffer buffer;
+        synchronized (pool) {
+            buffer = pool.pollFirst();
+        }
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+        buffer.clear();
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Return a buffer obtained from {@link #acquire()}. The buffer must not be used afterwards.
+     */
+    public void release(@NonNull ByteBuffer buffer) {
+        if (!buffer.isDirect() || buffer.capacity() != bufferSize) {
+            throw new IllegalArgumentException("buffer is not from this pool");
+        }
+        synchronized (pool) {
+            if (pool.size() < maxPooled) {
+                pool.addFirst(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reads a file written by {@link LittleEndianRecordWriter} without blocking the calling thread.
+ * <p>
+ * Reads for the next {@code readAhead} chunks of the file are issued on an
+ * {@link AsynchronousFileChannel} ahead of time, and records are decoded as soon as the
+ * chunks containing them complete. Records are delivered in file order. The decoder and the
+ * consumer run on the channel's completion threads, one record at a time.
+ * <pre>
+ * reader.readAll(decoder).thenAccept(entries -&gt; ...);
+ * </pre>
+ */
+@RequiresApi(26)
+public class LittleEndianAsyncRecordReader implements Closeable {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int DEFAULT_READ_AHEAD = 4;
+
+    private final AsynchronousFileChannel channel;
+    private final int chunkSize;
+    private final int readAhead;
+
+    public LittleEndianAsyncRecordReader(@NonNull File file) throws IOException {
+        this(AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ), DEFAULT_CHUNK_SIZE, DEFAULT_READ_AHEAD);
+    }
+
+    /**
+     * The channel will be closed when this reader is closed.
+     *
+     * @param chunkSize Size of each read
+     * @param readAhead Maximum number of reads in flight
+     */
+    public LittleEndianAsyncRecordReader(@NonNull AsynchronousFileChannel channel, int chunkSize, int readAhead) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize <= 0");
+        }
+        if (readAhead <= 0) {
+            throw new IllegalArgumentException("readAhead <= 0");
+        }
+        this.channel = channel;
+        this.chunkSize = chunkSize;
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Decode all records and pass them to {@code consumer} in file order.
+     *
+     * @return a future that completes when the whole file is decoded, or completes
+     * exceptionally with the first error. Cancelling it stops reading.
+     */
+    @NonNull
+    public <T> CompletableFuture<Void> read(@NonNull RecordDecoder<T> decoder, @NonNull Consumer<? super T> consumer) {
+        Session<T> session = new Session<>(decoder, consumer);
+        session.start();
+        return session.result;
+    }
+
+    /**
+     * Decode all records into a list.
+     */
+    @NonNull
+    public <T> CompletableFuture<List<T>> readAll(@NonNull RecordDecoder<T> decoder) {
+        final List<T> list = new ArrayList<>();
+        return read(decoder, list::add).thenApply(ignored -> list);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private static final class RecordInputStream extends ByteArrayInputStream {
+
+        RecordInputStream() {
+            super(new byte[0]);
+        }
+
+        void set(byte[] b, int off, int len) {
+            buf = b;
+            pos = off;
+            count = off + len;
+            mark = off;
+        }
+    }
+
+    private final class Session<T> {
+
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        private final RecordDecoder<T> decoder;
+        private final Consumer<? super T> consumer;
+
+        // Number of pump() calls not handled yet, only the call that increases it from 0 runs drain()
+        private final AtomicInteger pumpRequests = new AtomicInteger();
+
+        // Chunk reads in file order, only touched by the thread currently running drain()
+        private final ArrayDeque<CompletableFuture<ByteBuffer>> inflight = new ArrayDeque<>();
+        private long fileSize;
+        private long nextReadPosition;
+
+        // Bytes received but not decoded yet are window[windowPos, windowEnd)
+        private byte[] window = new byte[chunkSize * 2];
+        private ByteBuffer windowBuffer = ByteBuffer.wrap(window).order(ByteOrder.LITTLE_ENDIAN);
+        private int windowPos;
+        private int windowEnd;
+
+        private boolean headerParsed;
+        private long syncLow;
+        private long syncHigh;
+
+        private final RecordInputStream recordStream = new RecordInputStream();
+        private final LittleEndianDataInputStream recordInput = new LittleEndianDataInputStream(recordStream);
+
+        Session(RecordDecoder<T> decoder, Consumer<? super T> consumer) {
+            this.decoder = decoder;
+            this.consumer = consumer;
+        }
+
+        void start() {
+            try {
+                fileSize = channel.size();
+                for (int i = 0; i < readAhead; i++) {
+                    issueRead();
+                }
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            pump();
+        }
+
+        private void issueRead() {
+            if (nextReadPosition >= fileSize) {
+                return;
+            }
+
+            long position = nextReadPosition;
+            int size = (int) Math.min(chunkSize, fileSize - position);
+            nextReadPosition += size;
+
+            CompletableFuture<ByteBuffer> future = new CompletableFuture<>();
+            readFully(ByteBuffer.allocate(size), position, future);
+            inflight.add(future);
+        }
+
+        private void readFully(final ByteBuffer buffer, final long position, final CompletableFuture<ByteBuffer> future) {
+            channel.read(buffer, position + buffer.position(), null, new CompletionHandler<Integer, Void>() {
+                @Override
+                public void completed(Integer read, Void attachment) {
+                    if (read < 0) {
+                        future.completeExceptionally(new EOFException("file truncated at " + (position + buffer.position())));
+                    } else if (buffer.hasRemaining()) {
+                        readFully(buffer, position, future);
+                    } else {
+                        future.complete(buffer);
+                    }
+                }
+
+                @Override
+                public void failed(Throwable e, Void attachment) {
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+
+        /**
+         * Run {@link #drain()}, or let the thread already running it run it again. A chunk
+         * completing while its callback is registered calls this inline, this makes sure that
+         * does not recurse.
+         */
+        private void pump() {
+            if (pumpRequests.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                drain();
+            } while (pumpRequests.decrementAndGet() != 0);
+        }
+
+        /**
+         * Process completed chunks in order. When the next chunk is not done yet, register
+         * to call {@link #pump()} on its completion and return.
+         */
+        private void drain() {
+            while (!result.isDone()) {
+                CompletableFuture<ByteBuffer> future = inflight.peek();
+                if (future == null) {
+                    finish();
+                    return;
+                }
+                if (!future.isDone()) {
+                    future.whenComplete((buffer, e) -> pump());
+                    return;
+                }
+
+                inflight.poll();
+                try {
+                    ByteBuffer buffer = future.join();
+                    issueRead();
+                    append(buffer);
+                    decode();
+                } catch (CompletionException e) {
+                    result.completeExceptionally(e.getCause());
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            }
+        }
+
+        private void append(ByteBuffer buffer) {
+            int size = buffer.capacity();
+            int remaining = windowEnd - windowPos;
+            if (windowEnd + size > window.length) {
+                byte[] target = window;
+                if (remaining + size > window.length) {
+                    target = new byte[Math.max(window.length * 2, remaining + size)];
+                }
+                System.arraycopy(window, windowPos, target, 0, remaining);
+                if (target != window) {
+                    window = target;
+                    windowBuffer = ByteBuffer.wrap(window).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                windowPos = 0;
+                windowEnd = remaining;
+            }
+
+            System.arraycopy(buffer.array(), 0, window, windowEnd, size);
+            windowEnd += size;
+        }
+
+        private void decode() throws IOException {
+            if (!headerParsed) {
+                if (windowEnd - windowPos < LittleEndianRecordWriter.HEADER_SIZE) {
+                    return;
+                }
+                if (windowBuffer.getInt(windowPos) != LittleEndianRecordWriter.MAGIC
+                        || windowBuffer.getInt(windowPos + 4) != LittleEndianRecordWriter.VERSION) {
+                    throw new IOException("not a record file");
+                }
+                syncLow = windowBuffer.getLong(windowPos + 12);
+                syncHigh = windowBuffer.getLong(windowPos + 20);
+                windowPos += LittleEndianRecordWriter.HEADER_SIZE;
+                headerParsed = true;
+            }
+
+            while (windowEnd - windowPos >= 4 && !result.isDone()) {
+                int available = windowEnd - windowPos;
+                int size = windowBuffer.getInt(windowPos);
+
+                if (size == LittleEndianRecordWriter.SYNC_ESCAPE) {
+                    if (available < LittleEndianRecordWriter.SYNC_ENTRY_SIZE) {
+                        return;
+                    }
+                    if (windowBuffer.getLong(windowPos + 4) != syncLow || windowBuffer.getLong(windowPos + 12) != syncHigh) {
+                        throw new IOException("corrupt sync marker");
+                    }
+                    windowPos += LittleEndianRecordWriter.SYNC_ENTRY_SIZE;
+                    continue;
+                }
+
+                if (size < 0) {
+                    throw new IOException("corrupt record length " + size);
+                }
+                if (available - 4 < size) {
+                    return;
+                }
+
+                recordStream.set(window, windowPos + 4, size);
+                T value = decoder.decode(recordInput, size);
+                windowPos += 4 + size;
+                consumer.accept(value);
+            }
+        }
+
+        private void finish() {
+            if (!headerParsed || windowPos != windowEnd) {
+                result.completeExceptionally(new EOFException("record file is truncated"));
+            } else {
+                result.complete(null);
+            }
+        }
+    }
+}
@@ -0,0 +1,418 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Writes little-endian data to a {@link WritableByteChannel}.
+ * <p>
+ * Values are encoded into direct buffers taken from a {@link DirectByteBufferPool}. Filled
+ * buffers are queued and written together with one {@link GatheringByteChannel#write(ByteBuffer[], int, int)}
+ * call when the queue is full or {@link #flush()} is called, so the data is never copied
+ * through a heap array. The encoding is the same as {@link LittleEndianDataOutputStream}.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class LittleEndianChannelWriter implements DataOutput, Flushable, Closeable {
+
+    private static final int DEFAULT_MAX_PENDING_BUFFERS = 16;
+
+    private final WritableByteChannel channel;
+    private final DirectByteBufferPool pool;
+    private final ByteBuffer[] pending;
+    private int pendingCount;
+    private ByteBuffer current;
+
+    public LittleEndianChannelWriter(@NonNull WritableByteChannel channel) {
+        this(channel, DirectByteBufferPool.getDefault(), DEFAULT_MAX_PENDING_BUFFERS);
+    }
+
+    /**
+     * @param maxPendingBuffers Number of filled buffers to collect before writing them to the channel
+     */
+    public LittleEndianChannelWriter(@NonNull WritableByteChannel channel, @NonNull DirectByteBufferPool pool, int maxPendingBuffers) {
+        if (maxPendingBuffers < 1) {
+            throw new IllegalArgumentException("maxPendingBuffers < 1");
+        }
+        this.channel = channel;
+        this.pool = pool;
+        this.pending = new ByteBuffer[maxPendingBuffers];
+        this.current = pool.acquire();
+    }
+
+    /**
+     * Make sure the current buffer has room for {@code n} bytes, queueing it and taking
+     * a new one from the pool if it does not.
+     */
+    private ByteBuffer ensure(int n) throws IOException {
+        ByteBuffer buffer = current;
+        if (buffer.remaining() >= n) {
+            return buffer;
+        }
+
+        enqueueCurrent();
+        current = pool.acquire();
+        return current;
+    }
+
+    private void enqueueCurrent() throws IOException {
+        if (pendingCount == pending.length) {
+            writePending();
+        }
+
+        ByteBuffer buffer = current;
+        current = null;
+        buffer.flip();
+        pending[pendingCount++] = buffer;
+    }
+
+    private void writePending() throws IOException {
+        int count = pendingCount;
+        if (count == 0) {
+            return;
+        }
+
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gathering = (GatheringByteChannel) channel;
+            int first = 0;
+            while (first < count) {
+                gathering.write(pending, first, count - first);
+                while (first < count && !pending[first].hasRemaining()) {
+                    first++;
+                }
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                ByteBuffer buffer = pending[i];
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            pool.release(pending[i]);
+            pending[i] = null;
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Write all queued data to the channel.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (current.position() > 0) {
+            enqueueCurrent();
+            current = pool.acquire();
+        }
+        writePending();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensure(1).put((byte) b);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        checkBounds(b.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(1);
+            int n = Math.min(len, buffer.remaining());
+            buffer.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Write the remaining bytes of {@code src}.
+     */
+    public void write(@NonNull ByteBuffer src) throws IOException {
+        int limit = src.limit();
+        while (src.hasRemaining()) {
+            ByteBuffer buffer = ensure(1);
+            int n = Math.min(src.remaining(), buffer.remaining());
+            src.limit(src.position() + n);
+            buffer.put(src);
+            src.limit(limit);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean v) throws IOException {
+        ensure(1).put((byte) (v ? 1 : 0));
+    }
+
+    @Override
+    public void writeByte(int v) throws IOException {
+        ensure(1).put((byte) v);
+    }
+
+    @Override
+    public void writeShort(int v) throws IOException {
+        ensure(2).putShort((short) v);
+    }
+
+    @Override
+    public void writeChar(int v) throws IOException {
+        ensure(2).putChar((char) v);
+    }
+
+    @Override
+    public void writeInt(int v) throws IOException {
+        ensure(4).putInt(v);
+    }
+
+    @Override
+    public void writeLong(long v) throws IOException {
+        ensure(8).putLong(v);
+    }
+
+    @Override
+    public void writeFloat(float v) throws IOException {
+        writeInt(Float.floatToIntBits(v));
+    }
+
+    @Override
+    public void writeDouble(double v) throws IOException {
+        writeLong(Double.doubleToLongBits(v));
+    }
+
+    /**
+     * @see LittleEndianDataOutputStream#writeUnsignedVarInt(int)
+     */
+    public void writeUnsignedVarInt(int v) throws IOException {
+        ByteBuffer buffer = ensure(LittleEndianDataInputStream.MAX_VARINT_SIZE);
+        while ((v & ~0x7F) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    /**
+     * @see LittleEndianDataOutputStream#writeUnsignedVarLong(long)
+     */
+    public void writeUnsignedVarLong(long v) throws IOException {
+        ByteBuffer buffer = ensure(LittleEndianDataInputStream.MAX_VARLONG_SIZE);
+        while ((v & ~0x7FL) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    /**
+     * @see LittleEndianDataOutputStream#writeSignedVarInt(int)
+     */
+    public void writeSignedVarInt(int v) throws IOException {
+        writeUnsignedVarInt((v << 1) ^ (v >> 31));
+    }
+
+    /**
+     * @see LittleEndianDataOutputStream#writeSignedVarLong(long)
+     */
+    public void writeSignedVarLong(long v) throws IOException {
+        writeUnsignedVarLong((v << 1) ^ (v >> 63));
+    }
+
+    public void writeShorts(@NonNull short[] v) throws IOException {
+        writeShorts(v, 0, v.length);
+    }
+
+    public void writeShorts(@NonNull short[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(2);
+            int n = Math.min(len, buffer.remaining() / 2);
+            buffer.asShortBuffer().put(v, off, n);
+            buffer.position(buffer.position() + n * 2);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeChars(@NonNull char[] v) throws IOException {
+        writeChars(v, 0, v.length);
+    }
+
+    public void writeChars(@NonNull char[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(2);
+            int n = Math.min(len, buffer.remaining() / 2);
+            buffer.asCharBuffer().put(v, off, n);
+            buffer.position(buffer.position() + n * 2);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeInts(@NonNull int[] v) throws IOException {
+        writeInts(v, 0, v.length);
+    }
+
+    public void writeInts(@NonNull int[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(4);
+            int n = Math.min(len, buffer.remaining() / 4);
+            buffer.asIntBuffer().put(v, off, n);
+            buffer.position(buffer.position() + n * 4);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeLongs(@NonNull long[] v) throws IOException {
+        writeLongs(v, 0, v.length);
+    }
+
+    public void writeLongs(@NonNull long[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(8);
+            int n = Math.min(len, buffer.remaining() / 8);
+            buffer.asLongBuffer().put(v, off, n);
+            buffer.position(buffer.position() + n * 8);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeFloats(@NonNull float[] v) throws IOException {
+        writeFloats(v, 0, v.length);
+    }
+
+    public void writeFloats(@NonNull float[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(4);
+            int n = Math.min(len, buffer.remaining() / 4);
+            buffer.asFloatBuffer().put(v, off, n);
+            buffer.position(buffer.position() + n * 4);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeDoubles(@NonNull double[] v) throws IOException {
+        writeDoubles(v, 0, v.length);
+    }
+
+    public void writeDoubles(@NonNull double[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        while (len > 0) {
+            ByteBuffer buffer = ensure(8);
+            int n = Math.min(len, buffer.remaining() / 8);
+            buffer.asDoubleBuffer().put(v, off, n);
+            buffer.position(buffer.position() + n * 8);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void writeBytes(@NonNull String s) throws IOException {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            ensure(1).put((byte) s.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeChars(@NonNull String s) throws IOException {
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            ensure(2).putChar(s.charAt(i));
+        }
+    }
+
+    /**
+     * @see LittleEndianDataOutputStream#writeString(String)
+     */
+    public void writeString(@NonNull String s) throws IOException {
+        int length = s.length();
+        writeUnsignedVarInt(LittleEndianDataOutputStream.utf8Length(s));
+
+        for (int i = 0; i < length; i++) {
+            ByteBuffer buffer = ensure(4);
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+            } else {
+                buffer.put((byte) '?');
+            }
+        }
+    }
+
+    @Override
+    public void writeUTF(@NonNull String s) {
+        throw new UnsupportedOperationException("writeUTF is not supported, use writeString instead");
+    }
+
+    private static void checkBounds(int length, int off, int len) {
+        if ((off | len) < 0 || len > length - off) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + length);
+        }
+    }
+
+    /**
+     * Flush and close the channel. Buffers are returned to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        if (current == null) {
+            return;
+        }
+
+        try {
+            try {
+                flush();
+            } catch (IOException | RuntimeException e) {
+                // Close the channel anyway, the flush failure is more useful to the caller
+                try {
+                    channel.close();
+                } catch (IOException ignored) {
+                }
+                throw e;
+            }
+            channel.close();
+        } finally {
+            pool.release(current);
+            current = null;
+            for (int i = 0; i < pendingCount; i++) {
+                pool.release(pending[i]);
+                pending[i] = null;
+            }
+            pendingCount = 0;
+        }
+    }
+}
@@ -6,11 +6,20 @@ import java.io.DataInput;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class LittleEndianDataInputStream extends InputStream implements DataInput {
 
+    static final int MAX_VARINT_SIZE = 5;
+    static final int MAX_VARLONG_SIZE = 10;
+
     protected final InputStream in;
     private final byte[] buffer = new byte[8];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Buffers of the bulk array, string and line reads
+    private final DataInputHelper helper = new DataInputHelper();
 
     public LittleEndianDataInputStream(@NonNull InputStream in) {
         super();
@@ -94,8 +103,7 @@ public class LittleEndianDataInputStream extends InputStream implements DataInpu
     @Override
     public long readLong() throws IOException {
         readFully(buffer, 0, 8);
-        return buffer[7] << 24 | (buffer[6] & 0xFF) << 16 | (buffer[5] & 0xFF) << 8 | (buffer[4] & 0xFF)
-                | buffer[3] << 24 | (buffer[2] & 0xFF) << 16 | (buffer[1] & 0xFF) << 8 | (buffer[0] & 0xFF);
+        return wrapped.getLong(0);
     }
 
     @Override
@@ -108,14 +116,111 @@ public class LittleEndianDataInputStream extends InputStream implements DataInpu
         return Double.longBitsToDouble(readLong());
     }
 
+    /**
+     * Read an unsigned LEB128 varint of at most 5 bytes.
+     */
+    public int readUnsignedVarInt() throws IOException {
+        return DataInputHelper.readUnsignedVarInt(this);
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most 10 bytes.
+     */
+    public long readUnsignedVarLong() throws IOException {
+        return DataInputHelper.readUnsignedVarLong(this);
+    }
+
+    /**
+     * Read a zig-zag encoded signed varint.
+     */
+    public int readSignedVarInt() throws IOException {
+        return DataInputHelper.decodeZigZag(readUnsignedVarInt());
+    }
+
+    /**
+     * Read a zig-zag encoded signed varlong.
+     */
+    public long readSignedVarLong() throws IOException {
+        return DataInputHelper.decodeZigZag(readUnsignedVarLong());
+    }
+
+    public void readShorts(@NonNull short[] b) throws IOException {
+        readShorts(b, 0, b.length);
+    }
+
+    public void readShorts(@NonNull short[] b, int off, int len) throws IOException {
+        helper.readShorts(this, b, off, len);
+    }
+
+    public void readChars(@NonNull char[] b) throws IOException {
+        readChars(b, 0, b.length);
+    }
+
+    public void readChars(@NonNull char[] b, int off, int len) throws IOException {
+        helper.readChars(this, b, off, len);
+    }
+
+    public void readInts(@NonNull int[] b) throws IOException {
+        readInts(b, 0, b.length);
+    }
+
+    public void readInts(@NonNull int[] b, int off, int len) throws IOException {
+        helper.readInts(this, b, off, len);
+    }
+
+    public void readLongs(@NonNull long[] b) throws IOException {
+        readLongs(b, 0, b.length);
+    }
+
+    public void readLongs(@NonNull long[] b, int off, int len) throws IOException {
+        helper.readLongs(this, b, off, len);
+    }
+
+    public void readFloats(@NonNull float[] b) throws IOException {
+        readFloats(b, 0, b.length);
+    }
+
+    public void readFloats(@NonNull float[] b, int off, int len) throws IOException {
+        helper.readFloats(this, b, off, len);
+    }
+
+    public void readDoubles(@NonNull double[] b) throws IOException {
+        readDoubles(b, 0, b.length);
+    }
+
+    public void readDoubles(@NonNull double[] b, int off, int len) throws IOException {
+        helper.readDoubles(this, b, off, len);
+    }
+
+    /**
+     * Read a line as described by {@link DataInput#readLine()}, each byte is converted
+     * to a char with the high byte zero.
+     * <p>
+     * Lines end with {@code '\n'} or {@code "\r\n"}. Unlike {@link java.io.DataInputStream},
+     * a {@code '\r'} alone does not end a line, because that needs the byte after it to be
+     * pushed back to the stream.
+     *
+     * @return the line without the line terminator, or null if the stream ends before any byte
+     */
     @Override
-    public String readLine() {
-        throw new UnsupportedOperationException("readLine is not supported");
+    public String readLine() throws IOException {
+        return helper.readLine(this);
     }
 
     @Override
     public String readUTF() throws IOException {
-        throw new UnsupportedOperationException("readUTF is not supported");
+        throw new UnsupportedOperationException("readUTF is not supported, use readString instead");
+    }
+
+    /**
+     * Read a string written by {@link LittleEndianDataOutputStream#writeString(String)}.
+     * <p>
+     * The bytes and chars are decoded through arrays owned by this stream, the returned
+     * {@link String} is the only allocation once they are large enough.
+     */
+    @NonNull
+    public String readString() throws IOException {
+        return helper.readString(this, readUnsignedVarInt());
     }
 
     @Override
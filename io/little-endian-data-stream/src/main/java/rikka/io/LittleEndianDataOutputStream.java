@@ -1,13 +1,23 @@
 package rikka.io;
 
+import androidx.annotation.NonNull;
+
 import java.io.DataOutput;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 public class LittleEndianDataOutputStream extends OutputStream implements DataOutput {
 
+    private static final int BLOCK_SIZE = 8192;
+
     protected final OutputStream out;
-    private final byte[] buffer = new byte[8];
+    private final byte[] buffer = new byte[10];
+    private final ByteBuffer wrapped = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Scratch space for the bulk array writes, allocated on first use
+    private ByteBuffer block;
 
     public LittleEndianDataOutputStream(OutputStream out) {
         super();
@@ -19,6 +29,11 @@ public class LittleEndianDataOutputStream extends OutputStream implements DataOu
         out.write(b);
     }
 
+    @Override
+    public void write(@NonNull byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+    }
+
     @Override
     public void writeBoolean(boolean v) throws IOException {
         out.write(v ? 1 : 0);
@@ -52,15 +67,8 @@ public class LittleEndianDataOutputStream extends OutputStream implements DataOu
 
     @Override
     public void writeLong(long v) throws IOException {
-        buffer[0] = (byte) (0xFF & v);
-        buffer[1] = (byte) (0xFF & (v >> 8));
-        buffer[2] = (byte) (0xFF & (v >> 16));
-        buffer[3] = (byte) (0xFF & (v >> 24));
-        buffer[4] = (byte) (0xFF & (v >> 32));
-        buffer[5] = (byte) (0xFF & (v >> 40));
-        buffer[6] = (byte) (0xFF & (v >> 48));
-        buffer[7] = (byte) (0xFF & (v >> 56));
-        write(buffer, 0, 8);
+        wrapped.putLong(0, v);
+        out.write(buffer, 0, 8);
     }
 
     @Override
@@ -73,19 +81,272 @@ public class LittleEndianDataOutputStream extends OutputStream implements DataOu
         writeLong(Double.doubleToLongBits(v));
     }
 
+    /**
+     * Write {@code v} as an unsigned LEB128 varint, 1 to 5 bytes.
+     */
+    public void writeUnsignedVarInt(int v) throws IOException {
+        int i = 0;
+        while ((v & ~0x7F) != 0) {
+            buffer[i++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[i++] = (byte) v;
+        out.write(buffer, 0, i);
+    }
+
+    /**
+     * Write {@code v} as an unsigned LEB128 varint, 1 to 10 bytes.
+     */
+    public void writeUnsignedVarLong(long v) throws IOException {
+        int i = 0;
+        while ((v & ~0x7FL) != 0) {
+            buffer[i++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[i++] = (byte) v;
+        out.write(buffer, 0, i);
+    }
+
+    /**
+     * Write {@code v} zig-zag encoded as a varint, so small negative values stay short.
+     */
+    public void writeSignedVarInt(int v) throws IOException {
+        writeUnsignedVarInt((v << 1) ^ (v >> 31));
+    }
+
+    /**
+     * Write {@code v} zig-zag encoded as a varlong, so small negative values stay short.
+     */
+    public void writeSignedVarLong(long v) throws IOException {
+        writeUnsignedVarLong((v << 1) ^ (v >> 63));
+    }
+
+    public void writeShorts(@NonNull short[] v) throws IOException {
+        writeShorts(v, 0, v.length);
+    }
+
+    public void writeShorts(@NonNull short[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 2);
+            block.clear();
+            block.asShortBuffer().put(v, off, n);
+            out.write(block.array(), 0, n * 2);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeChars(@NonNull char[] v) throws IOException {
+        writeChars(v, 0, v.length);
+    }
+
+    public void writeChars(@NonNull char[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 2);
+            block.clear();
+            block.asCharBuffer().put(v, off, n);
+            out.write(block.array(), 0, n * 2);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeInts(@NonNull int[] v) throws IOException {
+        writeInts(v, 0, v.length);
+    }
+
+    public void writeInts(@NonNull int[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 4);
+            block.clear();
+            block.asIntBuffer().put(v, off, n);
+            out.write(block.array(), 0, n * 4);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeLongs(@NonNull long[] v) throws IOException {
+        writeLongs(v, 0, v.length);
+    }
+
+    public void writeLongs(@NonNull long[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 8);
+            block.clear();
+            block.asLongBuffer().put(v, off, n);
+            out.write(block.array(), 0, n * 8);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeFloats(@NonNull float[] v) throws IOException {
+        writeFloats(v, 0, v.length);
+    }
+
+    public void writeFloats(@NonNull float[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 4);
+            block.clear();
+            block.asFloatBuffer().put(v, off, n);
+            out.write(block.array(), 0, n * 4);
+            off += n;
+            len -= n;
+        }
+    }
+
+    public void writeDoubles(@NonNull double[] v) throws IOException {
+        writeDoubles(v, 0, v.length);
+    }
+
+    public void writeDoubles(@NonNull double[] v, int off, int len) throws IOException {
+        checkBounds(v.length, off, len);
+        ByteBuffer block = block();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE / 8);
+            block.clear();
+            block.asDoubleBuffer().put(v, off, n);
+            out.write(block.array(), 0, n * 8);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private ByteBuffer block() {
+        if (block == null) {
+            block = ByteBuffer.allocate(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return block;
+    }
+
+    private static void checkBounds(int length, int off, int len) {
+        if ((off | len) < 0 || len > length - off) {
+            throw new IndexOutOfBoundsException("off " + off + ", len " + len + ", length " + length);
+        }
+    }
+
+    /**
+     * Write the low byte of each char, as described in {@link DataOutput#writeBytes(String)}.
+     */
     @Override
-    public void writeBytes(String s) throws IOException {
-        out.write(s.getBytes());
+    public void writeBytes(@NonNull String s) throws IOException {
+        byte[] block = block().array();
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            int n = Math.min(length - i, BLOCK_SIZE);
+            for (int j = 0; j < n; j++) {
+                block[j] = (byte) s.charAt(i + j);
+            }
+            out.write(block, 0, n);
+            i += n;
+        }
     }
 
+    /**
+     * Write each char as a little-endian 16-bit value.
+     */
     @Override
-    public void writeChars(String s) {
-        throw new UnsupportedOperationException("writeChars is not supported");
+    public void writeChars(@NonNull String s) throws IOException {
+        ByteBuffer block = block();
+        int length = s.length();
+        int i = 0;
+        while (i < length) {
+            int n = Math.min(length - i, BLOCK_SIZE / 2);
+            for (int j = 0; j < n; j++) {
+                block.putChar(j * 2, s.charAt(i + j));
+            }
+            out.write(block.array(), 0, n * 2);
+            i += n;
+        }
+    }
+
+    /**
+     * Write {@code s} as an unsigned varint byte length followed by the UTF-8 bytes.
+     * Unpaired surrogates are written as {@code '?'}.
+     * <p>
+     * The chars are encoded straight into the internal block buffer, no intermediate
+     * {@code byte[]} is created.
+     *
+     * @see LittleEndianDataInputStream#readString()
+     */
+    public void writeString(@NonNull String s) throws IOException {
+        int length = s.length();
+        writeUnsignedVarInt(utf8Length(s));
+
+        byte[] block = block().array();
+        int n = 0;
+        for (int i = 0; i < length; i++) {
+            if (n > BLOCK_SIZE - 4) {
+                out.write(block, 0, n);
+                n = 0;
+            }
+
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                block[n++] = (byte) c;
+            } else if (c < 0x800) {
+                block[n++] = (byte) (0xC0 | (c >> 6));
+                block[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                block[n++] = (byte) (0xE0 | (c >> 12));
+                block[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                block[n++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                block[n++] = (byte) (0xF0 | (codePoint >> 18));
+                block[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                block[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                block[n++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else {
+                block[n++] = '?';
+            }
+        }
+        if (n > 0) {
+            out.write(block, 0, n);
+        }
+    }
+
+    static int utf8Length(String s) {
+        int length = s.length();
+        int bytes = length;
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                bytes += 1;
+            } else if (c < Character.MIN_SURROGATE || c > Character.MAX_SURROGATE) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+                // 2 chars, 4 bytes
+                bytes += 2;
+                i++;
+            }
+        }
+        return bytes;
     }
 
     @Override
     public void writeUTF(String s) {
-        throw new UnsupportedOperationException("writeUTF is not supported");
+        throw new UnsupportedOperationException("writeUTF is not supported, use writeString instead");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
     }
 
     @Override
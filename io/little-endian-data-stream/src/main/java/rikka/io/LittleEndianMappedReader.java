@@ -0,0 +1,362 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads little-endian data from a memory-mapped file.
+ * <p>
+ * In addition to the sequential {@link DataInput} methods, values can be read at any
+ * absolute offset with {@link #getInt(long)} and friends without moving the position.
+ * Files larger than 2 GB are mapped in segments.
+ */
+public class LittleEndianMappedReader implements DataInput, Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;
+
+    // Each segment maps a few extra bytes of the next one, so a primitive never
+    // straddles two segments.
+    private static final int SEGMENT_OVERLAP = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] segments;
+    private final int segmentShift;
+    private final long segmentSize;
+    private final long length;
+    private long position;
+
+    // Buffers of the bulk array, string and line reads
+    private final DataInputHelper helper = new DataInputHelper();
+
+    public LittleEndianMappedReader(@NonNull File file) throws IOException {
+        this(new RandomAccessFile(file, "r").getChannel());
+    }
+
+    /**
+     * Map the whole content of the channel. The channel will be closed when this reader is closed.
+     */
+    public LittleEndianMappedReader(@NonNull FileChannel channel) throws IOException {
+        this(channel, SEGMENT_SHIFT);
+    }
+
+    /**
+     * @param segmentShift Log2 of the segment size, smaller segments are only for tests
+     */
+    LittleEndianMappedReader(@NonNull FileChannel channel, int segmentShift) throws IOException {
+        this.channel = channel;
+        this.segmentShift = segmentShift;
+        this.segmentSize = 1L << segmentShift;
+        try {
+            this.length = channel.size();
+
+            int count = (int) ((length + segmentSize - 1) >>> segmentShift);
+            segments = new ByteBuffer[count];
+            for (int i = 0; i < count; i++) {
+                long start = (long) i << segmentShift;
+                long size = Math.min(segmentSize + SEGMENT_OVERLAP, length - start);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, size).order(ByteOrder.LITTLE_ENDIAN);
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private LittleEndianMappedReader(LittleEndianMappedReader source) {
+        this.channel = null;
+        this.segments = source.segments;
+        this.segmentShift = source.segmentShift;
+        this.segmentSize = source.segmentSize;
+        this.length = source.length;
+        this.position = source.position;
+    }
+
+    /**
+     * Create a reader that shares the mapping with this one but has its own position,
+     * so several threads can read the same file. Closing the duplicate does nothing.
+     */
+    @NonNull
+    public LittleEndianMappedReader duplicate() {
+        return new LittleEndianMappedReader(this);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public long position() {
+        return position;
+    }
+
+    public void position(long newPosition) {
+        if (newPosition < 0 || newPosition > length) {
+            throw new IllegalArgumentException("position " + newPosition + " out of range [0, " + length + "]");
+        }
+        position = newPosition;
+    }
+
+    public long remaining() {
+        return length - position;
+    }
+
+    private void checkIndex(long offset, int n) {
+        if (offset < 0 || n > length - offset) {
+            throw new IndexOutOfBoundsException("offset " + offset + ", size " + n + ", length " + length);
+        }
+    }
+
+    private ByteBuffer segment(long offset) {
+        return segments[(int) (offset >>> segmentShift)];
+    }
+
+    private int index(long offset) {
+        return (int) (offset & (segmentSize - 1));
+    }
+
+    public byte getByte(long offset) {
+        checkIndex(offset, 1);
+        return segment(offset).get(index(offset));
+    }
+
+    public short getShort(long offset) {
+        checkIndex(offset, 2);
+        return segment(offset).getShort(index(offset));
+    }
+
+    public char getChar(long offset) {
+        checkIndex(offset, 2);
+        return segment(offset).getChar(index(offset));
+    }
+
+    public int getInt(long offset) {
+        checkIndex(offset, 4);
+        return segment(offset).getInt(index(offset));
+    }
+
+    public long getLong(long offset) {
+        checkIndex(offset, 8);
+        return segment(offset).getLong(index(offset));
+    }
+
+    public float getFloat(long offset) {
+        return Float.intBitsToFloat(getInt(offset));
+    }
+
+    public double getDouble(long offset) {
+        return Double.longBitsToDouble(getLong(offset));
+    }
+
+    /**
+     * Copy {@code len} bytes starting at {@code offset} into {@code b}.
+     */
+    public void get(long offset, byte[] b, int off, int len) {
+        checkIndex(offset, len);
+        while (len > 0) {
+            int index = index(offset);
+            int n = (int) Math.min(len, segmentSize - index);
+
+            ByteBuffer duplicate = segment(offset).duplicate();
+            duplicate.position(index);
+            duplicate.get(b, off, n);
+
+            offset += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    private long advance(int n) throws EOFException {
+        long offset = position;
+        if (n > length - offset) {
+            throw new EOFException("reached end at " + offset + "; excepted " + n + " bytes");
+        }
+        position = offset + n;
+        return offset;
+    }
+
+    @Override
+    public void readFully(@NonNull byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(@NonNull byte[] b, int off, int len) throws IOException {
+        get(advance(len), b, off, len);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = (int) Math.max(0, Math.min(n, length - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        long offset = advance(1);
+        return segment(offset).get(index(offset));
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        long offset = advance(2);
+        return segment(offset).getShort(index(offset));
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        long offset = advance(4);
+        return segment(offset).getInt(index(offset));
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        long offset = advance(8);
+        return segment(offset).getLong(index(offset));
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most 5 bytes.
+     */
+    public int readUnsignedVarInt() throws IOException {
+        return DataInputHelper.readUnsignedVarInt(this);
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most 10 bytes.
+     */
+    public long readUnsignedVarLong() throws IOException {
+        return DataInputHelper.readUnsignedVarLong(this);
+    }
+
+    /**
+     * Read a zig-zag encoded signed varint.
+     */
+    public int readSignedVarInt() throws IOException {
+        return DataInputHelper.decodeZigZag(readUnsignedVarInt());
+    }
+
+    /**
+     * Read a zig-zag encoded signed varlong.
+     */
+    public long readSignedVarLong() throws IOException {
+        return DataInputHelper.decodeZigZag(readUnsignedVarLong());
+    }
+
+    public void readShorts(@NonNull short[] b) throws IOException {
+        readShorts(b, 0, b.length);
+    }
+
+    public void readShorts(@NonNull short[] b, int off, int len) throws IOException {
+        helper.readShorts(this, b, off, len);
+    }
+
+    public void readChars(@NonNull char[] b) throws IOException {
+        readChars(b, 0, b.length);
+    }
+
+    public void readChars(@NonNull char[] b, int off, int len) throws IOException {
+        helper.readChars(this, b, off, len);
+    }
+
+    public void readInts(@NonNull int[] b) throws IOException {
+        readInts(b, 0, b.length);
+    }
+
+    public void readInts(@NonNull int[] b, int off, int len) throws IOException {
+        helper.readInts(this, b, off, len);
+    }
+
+    public void readLongs(@NonNull long[] b) throws IOException {
+        readLongs(b, 0, b.length);
+    }
+
+    public void readLongs(@NonNull long[] b, int off, int len) throws IOException {
+        helper.readLongs(this, b, off, len);
+    }
+
+    public void readFloats(@NonNull float[] b) throws IOException {
+        readFloats(b, 0, b.length);
+    }
+
+    public void readFloats(@NonNull float[] b, int off, int len) throws IOException {
+        helper.readFloats(this, b, off, len);
+    }
+
+    public void readDoubles(@NonNull double[] b) throws IOException {
+        readDoubles(b, 0, b.length);
+    }
+
+    public void readDoubles(@NonNull double[] b, int off, int len) throws IOException {
+        helper.readDoubles(this, b, off, len);
+    }
+
+    /**
+     * Read a line like {@link LittleEndianDataInputStream#readLine()}.
+     *
+     * @return the line without the line terminator, or null if the file ends before any byte
+     */
+    @Override
+    public String readLine() throws IOException {
+        return helper.readLine(this);
+    }
+
+    @Override
+    public String readUTF() {
+        throw new UnsupportedOperationException("readUTF is not supported, use readString instead");
+    }
+
+    /**
+     * Read a string written by {@link LittleEndianDataOutputStream#writeString(String)}.
+     */
+    @NonNull
+    public String readString() throws IOException {
+        return helper.readString(this, readUnsignedVarInt());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads little-endian data from a file at any position.
+ * <p>
+ * Reads go through {@link FileChannel#read(ByteBuffer, long)} into a small read-ahead cache,
+ * so reading a few fields near each other costs one positional read. Besides the sequential
+ * {@link DataInput} methods, {@link #seek(long)} moves the position and {@link #readIntAt(long)}
+ * and friends read at an absolute offset without moving it.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class LittleEndianRandomAccessReader implements DataInput, Closeable {
+
+    private static final int DEFAULT_CACHE_SIZE = 4096;
+    private static final int MIN_CACHE_SIZE = 8;
+
+    private final FileChannel channel;
+    private final ByteBuffer cache;
+
+    // File offset of the first byte in cache, and the number of valid bytes
+    private long cacheStart;
+    private int cacheLength;
+
+    private long position;
+
+    // Buffers of the bulk array, string and line reads
+    private final DataInputHelper helper = new DataInputHelper();
+
+    public LittleEndianRandomAccessReader(@NonNull File file) throws IOException {
+        this(new RandomAccessFile(file, "r"));
+    }
+
+    public LittleEndianRandomAccessReader(@NonNull RandomAccessFile file) {
+        this(file.getChannel());
+    }
+
+    public LittleEndianRandomAccessReader(@NonNull FileChannel channel) {
+        this(channel, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * The channel will be closed when this reader is closed.
+     *
+     * @param cacheSize Size of the read-ahead cache, must be at least 8 bytes
+     */
+    public LittleEndianRandomAccessReader(@NonNull FileChannel channel, int cacheSize) {
+        if (cacheSize < MIN_CACHE_SIZE) {
+            throw new IllegalArgumentException("cacheSize < " + MIN_CACHE_SIZE);
+        }
+        this.channel = channel;
+        this.cache = ByteBuffer.allocate(cacheSize).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Set the position of the next sequential read. Seeking past the end is allowed,
+     * reads there will throw {@link EOFException}.
+     */
+    public void seek(long newPosition) {
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("negative position " + newPosition);
+        }
+        position = newPosition;
+    }
+
+    /**
+     * Make sure {@code n} bytes at {@code offset} are in the cache, refilling it from
+     * {@code offset} if they are not.
+     *
+     * @return index of {@code offset} in the cache
+     */
+    private int ensure(long offset, int n) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("negative offset " + offset);
+        }
+
+        long index = offset - cacheStart;
+        if (index >= 0 && index + n <= cacheLength) {
+            return (int) index;
+        }
+
+        cache.clear();
+        cacheStart = offset;
+        cacheLength = 0;
+        while (cache.hasRemaining()) {
+            int read = channel.read(cache, offset + cache.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        cacheLength = cache.position();
+
+        if (cacheLength < n) {
+            throw new EOFException("reached end at " + (offset + cacheLength) + "; excepted " + n + " bytes at " + offset);
+        }
+        return 0;
+    }
+
+    public byte readByteAt(long offset) throws IOException {
+        return cache.get(ensure(offset, 1));
+    }
+
+    public short readShortAt(long offset) throws IOException {
+        return cache.getShort(ensure(offset, 2));
+    }
+
+    public char readCharAt(long offset) throws IOException {
+        return cache.getChar(ensure(offset, 2));
+    }
+
+    public int readIntAt(long offset) throws IOException {
+        return cache.getInt(ensure(offset, 4));
+    }
+
+    public long readLongAt(long offset) throws IOException {
+        return cache.getLong(ensure(offset, 8));
+    }
+
+    public float readFloatAt(long offset) throws IOException {
+        return Float.intBitsToFloat(readIntAt(offset));
+    }
+
+    public double readDoubleAt(long offset) throws IOException {
+        return Double.longBitsToDouble(readLongAt(offset));
+    }
+
+    /**
+     * Read exactly {@code len} bytes at {@code offset} into {@code b}.
+     */
+    public void readFullyAt(long offset, @NonNull byte[] b, int off, int len) throws IOException {
+        if (len <= cache.capacity()) {
+            System.arraycopy(cache.array(), ensure(offset, len), b, off, len);
+            return;
+        }
+
+        // Too large for the cache, read directly into the destination
+        ByteBuffer dst = ByteBuffer.wrap(b, off, len);
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, offset + (dst.position() - off));
+            if (read < 0) {
+                throw new EOFException("reached end after reading " + (dst.position() - off) + " bytes; excepted " + len + " bytes");
+            }
+        }
+    }
+
+    @Override
+    public void readFully(@NonNull byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(@NonNull byte[] b, int off, int len) throws IOException {
+        readFullyAt(position, b, off, len);
+        position += len;
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int skipped = (int) Math.max(0, Math.min(n, length() - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        byte v = readByteAt(position);
+        position += 1;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        short v = readShortAt(position);
+        position += 2;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        int v = readIntAt(position);
+        position += 4;
+        return v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        long v = readLongAt(position);
+        position += 8;
+        return v;
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most 5 bytes.
+     */
+    public int readUnsignedVarInt() throws IOException {
+        return DataInputHelper.readUnsignedVarInt(this);
+    }
+
+    /**
+     * Read an unsigned LEB128 varint of at most 10 bytes.
+     */
+    public long readUnsignedVarLong() throws IOException {
+        return DataInputHelper.readUnsignedVarLong(this);
+    }
+
+    /**
+     * Read a zig-zag encoded signed varint.
+     */
+    public int readSignedVarInt() throws IOException {
+        return DataInputHelper.decodeZigZag(readUnsignedVarInt());
+    }
+
+    /**
+     * Read a zig-zag encoded signed varlong.
+     */
+    public long readSignedVarLong() throws IOException {
+        return DataInputHelper.decodeZigZag(readUnsignedVarLong());
+    }
+
+    public void readShorts(@NonNull short[] b) throws IOException {
+        readShorts(b, 0, b.length);
+    }
+
+    public void readShorts(@NonNull short[] b, int off, int len) throws IOException {
+        helper.readShorts(this, b, off, len);
+    }
+
+    public void readChars(@NonNull char[] b) throws IOException {
+        readChars(b, 0, b.length);
+    }
+
+    public void readChars(@NonNull char[] b, int off, int len) throws IOException {
+        helper.readChars(this, b, off, len);
+    }
+
+    public void readInts(@NonNull int[] b) throws IOException {
+        readInts(b, 0, b.length);
+    }
+
+    public void readInts(@NonNull int[] b, int off, int len) throws IOException {
+        helper.readInts(this, b, off, len);
+    }
+
+    public void readLongs(@NonNull long[] b) throws IOException {
+        readLongs(b, 0, b.length);
+    }
+
+    public void readLongs(@NonNull long[] b, int off, int len) throws IOException {
+        helper.readLongs(this, b, off, len);
+    }
+
+    public void readFloats(@NonNull float[] b) throws IOException {
+        readFloats(b, 0, b.length);
+    }
+
+    public void readFloats(@NonNull float[] b, int off, int len) throws IOException {
+        helper.readFloats(this, b, off, len);
+    }
+
+    public void readDoubles(@NonNull double[] b) throws IOException {
+        readDoubles(b, 0, b.length);
+    }
+
+    public void readDoubles(@NonNull double[] b, int off, int len) throws IOException {
+        helper.readDoubles(this, b, off, len);
+    }
+
+    /**
+     * Read a line like {@link LittleEndianDataInputStream#readLine()}.
+     *
+     * @return the line without the line terminator, or null if the file ends before any byte
+     */
+    @Override
+    public String readLine() throws IOException {
+        return helper.readLine(this);
+    }
+
+    @Override
+    public String readUTF() {
+        throw new UnsupportedOperationException("readUTF is not supported, use readString instead");
+    }
+
+    /**
+     * Read a string written by {@link LittleEndianDataOutputStream#writeString(String)}.
+     */
+    @NonNull
+    public String readString() throws IOException {
+        return helper.readString(this, readUnsignedVarInt());
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
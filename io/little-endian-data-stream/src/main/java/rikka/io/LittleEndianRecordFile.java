@@ -0,0 +1,193 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads a file written by {@link LittleEndianRecordWriter} through a memory mapping.
+ * <p>
+ * {@link #spliterator(RecordDecoder)} splits the file by byte ranges and every split
+ * starts at the first sync marker in its range, so a parallel {@link Stream} decodes the
+ * records on multiple cores while keeping their order:
+ * <pre>
+ * try (LittleEndianRecordFile file = new LittleEndianRecordFile(path)) {
+ *     List&lt;Entry&gt; entries = file.stream(decoder, true).collect(Collectors.toList());
+ * }
+ * </pre>
+ */
+@RequiresApi(24)
+public class LittleEndianRecordFile implements Closeable {
+
+    private final LittleEndianMappedReader reader;
+    private final int syncInterval;
+    private final long syncLow;
+    private final long syncHigh;
+
+    public LittleEndianRecordFile(@NonNull File file) throws IOException {
+        this(new LittleEndianMappedReader(file));
+    }
+
+    /**
+     * The reader will be closed when this file is closed.
+     */
+    public LittleEndianRecordFile(@NonNull LittleEndianMappedReader reader) throws IOException {
+        this.reader = reader;
+        try {
+            if (reader.length() < LittleEndianRecordWriter.HEADER_SIZE
+                    || reader.getInt(0) != LittleEndianRecordWriter.MAGIC
+                    || reader.getInt(4) != LittleEndianRecordWriter.VERSION) {
+                throw new IOException("not a record file");
+            }
+            syncInterval = reader.getInt(8);
+            if (syncInterval <= 0) {
+                throw new IOException("corrupt record file, sync interval " + syncInterval);
+            }
+            syncLow = reader.getLong(12);
+            syncHigh = reader.getLong(20);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+    }
+
+    private boolean isSync(long offset) {
+        return offset + LittleEndianRecordWriter.SYNC_ENTRY_SIZE <= reader.length()
+                && reader.getInt(offset) == LittleEndianRecordWriter.SYNC_ESCAPE
+                && reader.getLong(offset + 4) == syncLow
+                && reader.getLong(offset + 12) == syncHigh;
+    }
+
+    /**
+     * Find the first sync entry at or after {@code offset}.
+     *
+     * @return offset of the sync entry, or the file length if there is none
+     */
+    private long findSync(long offset) {
+        long last = reader.length() - LittleEndianRecordWriter.SYNC_ENTRY_SIZE;
+        for (long p = offset; p <= last; p++) {
+            if (isSync(p)) {
+                return p;
+            }
+        }
+        return reader.length();
+    }
+
+    /**
+     * Create a spliterator over all records.
+     * <p>
+     * A split covering the byte range {@code [start, end)} decodes the records after the
+     * first sync marker at or after {@code start}, up to the first sync marker at or after
+     * {@code end}. Each split reads through its own {@link LittleEndianMappedReader#duplicate()}.
+     * {@link IOException}s thrown by the decoder are rethrown as {@link UncheckedIOException}.
+     */
+    @NonNull
+    public <T> Spliterator<T> spliterator(@NonNull RecordDecoder<T> decoder) {
+        return new RecordSpliterator<>(decoder, LittleEndianRecordWriter.HEADER_SIZE, reader.length());
+    }
+
+    @NonNull
+    public <T> Stream<T> stream(@NonNull RecordDecoder<T> decoder, boolean parallel) {
+        return StreamSupport.stream(spliterator(decoder), parallel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private final class RecordSpliterator<T> implements Spliterator<T> {
+
+        private final RecordDecoder<T> decoder;
+        private final LittleEndianMappedReader in;
+        private long start;
+        private final long end;
+        private boolean started;
+
+        RecordSpliterator(RecordDecoder<T> decoder, long start, long end) {
+            this.decoder = decoder;
+            this.in = reader.duplicate();
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (!started) {
+                started = true;
+                in.position(start == LittleEndianRecordWriter.HEADER_SIZE ? start : findSync(start));
+            }
+
+            long length = in.length();
+            while (true) {
+                long offset = in.position();
+                if (offset + 4 > length) {
+                    in.position(length);
+                    return false;
+                }
+
+                if (isSync(offset)) {
+                    if (offset >= end) {
+                        // Records after this marker belong to the next split
+                        in.position(length);
+                        return false;
+                    }
+                    in.position(offset + LittleEndianRecordWriter.SYNC_ENTRY_SIZE);
+                    continue;
+                }
+
+                int size = in.getInt(offset);
+                long next = offset + 4 + size;
+                if (size < 0 || next > length) {
+                    throw new UncheckedIOException(new IOException("corrupt record at " + offset));
+                }
+
+                T value;
+                try {
+                    in.position(offset + 4);
+                    value = decoder.decode(in, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    in.position(next);
+                }
+                action.accept(value);
+                return true;
+            }
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            if (started || end - start < 2L * syncInterval) {
+                return null;
+            }
+
+            // The returned spliterator covers the prefix to keep the encounter order
+            long mid = start + (end - start) / 2;
+            RecordSpliterator<T> prefix = new RecordSpliterator<>(decoder, start, mid);
+            start = mid;
+            return prefix;
+        }
+
+        /**
+         * Estimated in bytes, the number of records is not known before decoding.
+         */
+        @Override
+        public long estimateSize() {
+            return end - start;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | IMMUTABLE;
+        }
+    }
+}
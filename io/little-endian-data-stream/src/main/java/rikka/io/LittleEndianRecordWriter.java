@@ -0,0 +1,132 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.UUID;
+
+/**
+ * Writes length-prefixed records with periodic sync markers, so the file can be split at
+ * arbitrary byte offsets and decoded in parallel by {@link LittleEndianRecordFile}.
+ * <p>
+ * The layout, all in little-endian:
+ * <pre>
+ * header: int magic, int version, int syncInterval, 16 bytes sync marker
+ * record: int length, length bytes
+ * sync:   int -1, 16 bytes sync marker
+ * </pre>
+ * A sync entry is written before a record once at least {@code syncInterval} bytes have been
+ * written since the previous one.
+ */
+public class LittleEndianRecordWriter implements Flushable, Closeable {
+
+    static final int MAGIC = 0x43455252; // "RREC"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 28;
+    static final int SYNC_ESCAPE = -1;
+    static final int SYNC_SIZE = 16;
+    static final int SYNC_ENTRY_SIZE = 4 + SYNC_SIZE;
+
+    private static final int DEFAULT_SYNC_INTERVAL = 64 * 1024;
+
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        byte[] array() {
+            return buf;
+        }
+    }
+
+    private final OutputStream out;
+    private final LittleEndianDataOutputStream dataOut;
+    private final byte[] sync = new byte[SYNC_SIZE];
+    private final int syncInterval;
+
+    private final RecordBuffer recordBuffer = new RecordBuffer();
+    private final LittleEndianDataOutputStream record = new LittleEndianDataOutputStream(recordBuffer);
+    private boolean inRecord;
+
+    private long sinceSync;
+
+    public LittleEndianRecordWriter(@NonNull OutputStream out) throws IOException {
+        this(out, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * @param syncInterval Minimum number of bytes between two sync markers, which is also the
+     *                     smallest unit the file can be split into for parallel decoding
+     */
+    public LittleEndianRecordWriter(@NonNull OutputStream out, int syncInterval) throws IOException {
+        if (syncInterval <= 0) {
+            throw new IllegalArgumentException("syncInterval <= 0");
+        }
+        this.out = out;
+        this.dataOut = new LittleEndianDataOutputStream(out);
+        this.syncInterval = syncInterval;
+
+        UUID uuid = UUID.randomUUID();
+        ByteBuffer.wrap(sync).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(uuid.getLeastSignificantBits())
+                .putLong(uuid.getMostSignificantBits());
+
+        dataOut.writeInt(MAGIC);
+        dataOut.writeInt(VERSION);
+        dataOut.writeInt(syncInterval);
+        out.write(sync);
+    }
+
+    /**
+     * Start a record. Write its content to the returned stream, then call {@link #endRecord()}.
+     */
+    @NonNull
+    public LittleEndianDataOutputStream beginRecord() {
+        if (inRecord) {
+            throw new IllegalStateException("endRecord is not called for the previous record");
+        }
+        inRecord = true;
+        recordBuffer.reset();
+        return record;
+    }
+
+    /**
+     * Write the record started by {@link #beginRecord()}.
+     */
+    public void endRecord() throws IOException {
+        if (!inRecord) {
+            throw new IllegalStateException("beginRecord is not called");
+        }
+        inRecord = false;
+        writeRecord(recordBuffer.array(), 0, recordBuffer.size());
+    }
+
+    public void writeRecord(@NonNull byte[] b) throws IOException {
+        writeRecord(b, 0, b.length);
+    }
+
+    public void writeRecord(@NonNull byte[] b, int off, int len) throws IOException {
+        if (sinceSync >= syncInterval) {
+            dataOut.writeInt(SYNC_ESCAPE);
+            out.write(sync);
+            sinceSync = 0;
+        }
+
+        dataOut.writeInt(len);
+        out.write(b, off, len);
+        sinceSync += 4 + len;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
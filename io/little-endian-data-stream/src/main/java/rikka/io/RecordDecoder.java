@@ -0,0 +1,23 @@
+package rikka.io;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInput;
+import java.io.IOException;
+
+/**
+ * Decodes one record written by {@link LittleEndianRecordWriter}.
+ *
+ * @param <T> Type of the decoded record
+ */
+public interface RecordDecoder<T> {
+
+    /**
+     * Decode a record. The input is positioned at the first byte of the record and may be
+     * left anywhere inside it, the caller moves to the next record afterwards.
+     *
+     * @param in     Little-endian input positioned at the record
+     * @param length Length of the record in bytes
+     */
+    T decode(@NonNull DataInput in, int length) throws IOException;
+}
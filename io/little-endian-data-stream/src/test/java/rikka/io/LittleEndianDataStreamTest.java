@@ -0,0 +1,1068 @@
+package rikka.io;
+
+import org.junit.Test;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Differential tests that check every read/write pair against {@link ByteBuffer} in
+ * little-endian order, using randomly generated sequences of values.
+ */
+public class LittleEndianDataStreamTest {
+
+    private static final int ROUNDS = 200;
+    private static final int OPS_PER_ROUND = 300;
+
+    private static final int TYPE_BOOLEAN = 0;
+    private static final int TYPE_BYTE = 1;
+    private static final int TYPE_SHORT = 2;
+    private static final int TYPE_CHAR = 3;
+    private static final int TYPE_INT = 4;
+    private static final int TYPE_LONG = 5;
+    private static final int TYPE_FLOAT = 6;
+    private static final int TYPE_DOUBLE = 7;
+    private static final int TYPE_COUNT = 8;
+
+    private static final long[] EDGE_VALUES = {
+            0, 1, -1, Byte.MIN_VALUE, Byte.MAX_VALUE, Short.MIN_VALUE, Short.MAX_VALUE, 0xFFFF,
+            Integer.MIN_VALUE, Integer.MAX_VALUE, 0xFFFFFFFFL, 0x80000000L,
+            Long.MIN_VALUE, Long.MAX_VALUE, 0x0123456789ABCDEFL, 0xFEDCBA9876543210L,
+    };
+
+    /**
+     * A sequence of typed values; values are stored as raw bits.
+     */
+    private static final class Sequence {
+
+        final int[] types;
+        final long[] bits;
+
+        Sequence(Random random, int size) {
+            types = new int[size];
+            bits = new long[size];
+            for (int i = 0; i < size; i++) {
+                types[i] = random.nextInt(TYPE_COUNT);
+                bits[i] = randomBits(random, types[i]);
+            }
+        }
+    }
+
+    private static long randomBits(Random random, int type) {
+        long v = random.nextInt(4) == 0 ? EDGE_VALUES[random.nextInt(EDGE_VALUES.length)] : random.nextLong();
+        switch (type) {
+            case TYPE_BOOLEAN:
+                return v & 1;
+            case TYPE_FLOAT: {
+                // Streams write canonical NaN like DataOutputStream does
+                float f = Float.intBitsToFloat((int) v);
+                return Float.floatToIntBits(f);
+            }
+            case TYPE_DOUBLE: {
+                double d = Double.longBitsToDouble(v);
+                return Double.doubleToLongBits(d);
+            }
+            default:
+                return v;
+        }
+    }
+
+    private static byte[] encodeWithByteBuffer(Sequence sequence) {
+        ByteBuffer buffer = ByteBuffer.allocate(sequence.types.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < sequence.types.length; i++) {
+            long v = sequence.bits[i];
+            switch (sequence.types[i]) {
+                case TYPE_BOOLEAN:
+                case TYPE_BYTE:
+                    buffer.put((byte) v);
+                    break;
+                case TYPE_SHORT:
+                    buffer.putShort((short) v);
+                    break;
+                case TYPE_CHAR:
+                    buffer.putChar((char) v);
+                    break;
+                case TYPE_INT:
+                    buffer.putInt((int) v);
+                    break;
+                case TYPE_LONG:
+                    buffer.putLong(v);
+                    break;
+                case TYPE_FLOAT:
+                    buffer.putFloat(Float.intBitsToFloat((int) v));
+                    break;
+                case TYPE_DOUBLE:
+                    buffer.putDouble(Double.longBitsToDouble(v));
+                    break;
+            }
+        }
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] encodeWithStream(Sequence sequence) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        writeSequence(sequence, out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void writeSequence(Sequence sequence, DataOutput out) throws IOException {
+        for (int i = 0; i < sequence.types.length; i++) {
+            long v = sequence.bits[i];
+            switch (sequence.types[i]) {
+                case TYPE_BOOLEAN:
+                    out.writeBoolean(v != 0);
+                    break;
+                case TYPE_BYTE:
+                    out.writeByte((int) v);
+                    break;
+                case TYPE_SHORT:
+                    out.writeShort((int) v);
+                    break;
+                case TYPE_CHAR:
+                    out.writeChar((int) v);
+                    break;
+                case TYPE_INT:
+                    out.writeInt((int) v);
+                    break;
+                case TYPE_LONG:
+                    out.writeLong(v);
+                    break;
+                case TYPE_FLOAT:
+                    out.writeFloat(Float.intBitsToFloat((int) v));
+                    break;
+                case TYPE_DOUBLE:
+                    out.writeDouble(Double.longBitsToDouble(v));
+                    break;
+            }
+        }
+    }
+
+    private static void assertDecodes(Sequence sequence, DataInput in) throws IOException {
+        for (int i = 0; i < sequence.types.length; i++) {
+            long v = sequence.bits[i];
+            String message = "value #" + i;
+            switch (sequence.types[i]) {
+                case TYPE_BOOLEAN:
+                    assertEquals(message, v != 0, in.readBoolean());
+                    break;
+                case TYPE_BYTE:
+                    assertEquals(message, (byte) v, in.readByte());
+                    break;
+                case TYPE_SHORT:
+                    assertEquals(message, (short) v, in.readShort());
+                    break;
+                case TYPE_CHAR:
+                    assertEquals(message, (char) v, in.readChar());
+                    break;
+                case TYPE_INT:
+                    assertEquals(message, (int) v, in.readInt());
+                    break;
+                case TYPE_LONG:
+                    assertEquals(message, v, in.readLong());
+                    break;
+                case TYPE_FLOAT:
+                    assertEquals(message, (int) v, Float.floatToIntBits(in.readFloat()));
+                    break;
+                case TYPE_DOUBLE:
+                    assertEquals(message, v, Double.doubleToLongBits(in.readDouble()));
+                    break;
+            }
+        }
+    }
+
+    /**
+     * An input stream that returns at most {@code chunk} bytes per read, to exercise
+     * partial reads and window refills.
+     */
+    private static InputStream trickle(byte[] bytes, final int chunk) {
+        return new FilterInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    @Test
+    public void write_matchesByteBuffer() throws IOException {
+        Random random = new Random(0x1EL);
+        for (int round = 0; round < ROUNDS; round++) {
+            Sequence sequence = new Sequence(random, OPS_PER_ROUND);
+            assertArrayEquals("round " + round, encodeWithByteBuffer(sequence), encodeWithStream(sequence));
+        }
+    }
+
+    @Test
+    public void read_matchesByteBuffer() throws IOException {
+        Random random = new Random(0x2EL);
+        for (int round = 0; round < ROUNDS; round++) {
+            Sequence sequence = new Sequence(random, OPS_PER_ROUND);
+            byte[] bytes = encodeWithByteBuffer(sequence);
+            int chunk = 1 + random.nextInt(16);
+
+            assertDecodes(sequence, new LittleEndianDataInputStream(trickle(bytes, chunk)));
+            assertDecodes(sequence, new BufferedLittleEndianDataInputStream(trickle(bytes, chunk), 10 + random.nextInt(64)));
+        }
+    }
+
+    @Test
+    public void readMapped_matchesByteBuffer() throws IOException {
+        Random random = new Random(0x3EL);
+        Sequence sequence = new Sequence(random, OPS_PER_ROUND * 10);
+        byte[] bytes = encodeWithByteBuffer(sequence);
+
+        File file = File.createTempFile("little-endian", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(bytes);
+            out.close();
+
+            LittleEndianMappedReader reader = new LittleEndianMappedReader(file);
+            assertDecodes(sequence, reader);
+            assertEquals(0, reader.remaining());
+
+            ByteBuffer expected = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < 1000; i++) {
+                int offset = random.nextInt(bytes.length - 7);
+                assertEquals(expected.getLong(offset), reader.getLong(offset));
+                assertEquals(expected.getInt(offset), reader.getInt(offset));
+                assertEquals(expected.getShort(offset), reader.getShort(offset));
+            }
+            reader.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readRandomAccess_matchesByteBuffer() throws IOException {
+        Random random = new Random(0x7EL);
+        Sequence sequence = new Sequence(random, OPS_PER_ROUND * 10);
+        byte[] bytes = encodeWithByteBuffer(sequence);
+
+        File file = File.createTempFile("little-endian", ".bin");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(bytes);
+            out.close();
+
+            LittleEndianRandomAccessReader reader = new LittleEndianRandomAccessReader(new RandomAccessFile(file, "r").getChannel(), 64);
+            assertDecodes(sequence, reader);
+            assertEquals(bytes.length, reader.position());
+
+            ByteBuffer expected = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < 1000; i++) {
+                int offset = random.nextInt(bytes.length - 7);
+                assertEquals(expected.getLong(offset), reader.readLongAt(offset));
+                assertEquals(expected.getInt(offset), reader.readIntAt(offset));
+
+                reader.seek(offset);
+                assertEquals(expected.getShort(offset), reader.readShort());
+                assertEquals(offset + 2, reader.position());
+            }
+
+            reader.seek(bytes.length - 3);
+            try {
+                reader.readInt();
+                fail();
+            } catch (EOFException ignored) {
+            }
+            reader.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static final String[] EXTENDED_STRINGS = {
+            "", "ascii", "\u00e9t\u00e9", "\u4e2d\u6587", "\ud83d\ude00 emoji", "a longer string that crosses a few segments",
+    };
+
+    /**
+     * Encode values for the methods beyond {@link DataInput}, such as varints and strings.
+     */
+    private static byte[] encodeExtended(int[] ints, long[] longs) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        for (int i = 0; i < ints.length; i++) {
+            out.writeUnsignedVarInt(ints[i]);
+            out.writeSignedVarInt(ints[i]);
+            out.writeUnsignedVarLong(longs[i]);
+            out.writeSignedVarLong(longs[i]);
+        }
+        for (String s : EXTENDED_STRINGS) {
+            out.writeString(s);
+        }
+        out.writeInts(ints);
+        out.writeLongs(longs);
+        out.writeBytes("first\r\nsecond\nlast");
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static File writeTempFile(byte[] bytes) throws IOException {
+        File file = File.createTempFile("little-endian", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes);
+        out.close();
+        return file;
+    }
+
+    @Test
+    public void readMapped_acrossSegments() throws IOException {
+        Random random = new Random(0x8EL);
+        Sequence sequence = new Sequence(random, OPS_PER_ROUND);
+        byte[] bytes = encodeWithByteBuffer(sequence);
+
+        File file = writeTempFile(bytes);
+        try {
+            // 16 byte segments, so that many values straddle two of them
+            LittleEndianMappedReader reader = new LittleEndianMappedReader(new RandomAccessFile(file, "r").getChannel(), 4);
+            assertDecodes(sequence, reader);
+            assertEquals(0, reader.remaining());
+
+            ByteBuffer expected = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            for (int offset = 0; offset < bytes.length - 7; offset++) {
+                assertEquals(expected.getLong(offset), reader.getLong(offset));
+                assertEquals(expected.getInt(offset), reader.getInt(offset));
+            }
+
+            byte[] copy = new byte[bytes.length - 5];
+            reader.get(3, copy, 0, copy.length);
+            for (int i = 0; i < copy.length; i++) {
+                assertEquals(bytes[i + 3], copy[i]);
+            }
+            reader.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readMapped_extendedMethods() throws IOException {
+        Random random = new Random(0x9EL);
+        int[] ints = new int[3000];
+        long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = random.nextInt() >> random.nextInt(32);
+            longs[i] = random.nextLong() >> random.nextInt(64);
+        }
+
+        File file = writeTempFile(encodeExtended(ints, longs));
+        try {
+            for (int segmentShift : new int[]{4, 30}) {
+                LittleEndianMappedReader reader = new LittleEndianMappedReader(new RandomAccessFile(file, "r").getChannel(), segmentShift);
+                for (int i = 0; i < ints.length; i++) {
+                    assertEquals(ints[i], reader.readUnsignedVarInt());
+                    assertEquals(ints[i], reader.readSignedVarInt());
+                    assertEquals(longs[i], reader.readUnsignedVarLong());
+                    assertEquals(longs[i], reader.readSignedVarLong());
+                }
+                for (String s : EXTENDED_STRINGS) {
+                    assertEquals(s, reader.readString());
+                }
+                int[] ints2 = new int[ints.length];
+                long[] longs2 = new long[longs.length];
+                reader.readInts(ints2);
+                reader.readLongs(longs2);
+                assertArrayEquals(ints, ints2);
+                assertArrayEquals(longs, longs2);
+                assertEquals("first", reader.readLine());
+                assertEquals("second", reader.readLine());
+                assertEquals("last", reader.readLine());
+                assertEquals(null, reader.readLine());
+                reader.close();
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readRandomAccess_extendedMethods() throws IOException {
+        Random random = new Random(0xAEL);
+        int[] ints = new int[3000];
+        long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = random.nextInt() >> random.nextInt(32);
+            longs[i] = random.nextLong() >> random.nextInt(64);
+        }
+
+        File file = writeTempFile(encodeExtended(ints, longs));
+        try {
+            LittleEndianRandomAccessReader reader = new LittleEndianRandomAccessReader(new RandomAccessFile(file, "r").getChannel(), 16);
+            for (int i = 0; i < ints.length; i++) {
+                assertEquals(ints[i], reader.readUnsignedVarInt());
+                assertEquals(ints[i], reader.readSignedVarInt());
+                assertEquals(longs[i], reader.readUnsignedVarLong());
+                assertEquals(longs[i], reader.readSignedVarLong());
+            }
+            for (String s : EXTENDED_STRINGS) {
+                assertEquals(s, reader.readString());
+            }
+            int[] ints2 = new int[ints.length];
+            long[] longs2 = new long[longs.length];
+            reader.readInts(ints2);
+            reader.readLongs(longs2);
+            assertArrayEquals(ints, ints2);
+            assertArrayEquals(longs, longs2);
+            assertEquals("first", reader.readLine());
+            assertEquals("second", reader.readLine());
+            assertEquals("last", reader.readLine());
+            assertEquals(null, reader.readLine());
+            reader.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void readLong_widensHighBytes() throws IOException {
+        long[] values = {0x0123456789ABCDEFL, 0x8000000000000000L, 0x00000000FFFFFFFFL, 0xFFFFFFFF00000000L};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        for (long v : values) {
+            out.writeLong(v);
+        }
+
+        LittleEndianDataInputStream in = new LittleEndianDataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long v : values) {
+            assertEquals(v, in.readLong());
+        }
+    }
+
+    @Test
+    public void bulkArrays_roundTrip() throws IOException {
+        Random random = new Random(0x4EL);
+        int size = 5000 + random.nextInt(5000);
+
+        short[] shorts = new short[size];
+        char[] chars = new char[size];
+        int[] ints = new int[size];
+        long[] longs = new long[size];
+        float[] floats = new float[size];
+        double[] doubles = new double[size];
+        ByteBuffer expected = ByteBuffer.allocate(size * 28).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < size; i++) {
+            shorts[i] = (short) random.nextInt();
+            expected.putShort(shorts[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            chars[i] = (char) random.nextInt();
+            expected.putChar(chars[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            ints[i] = random.nextInt();
+            expected.putInt(ints[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            longs[i] = random.nextLong();
+            expected.putLong(longs[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            floats[i] = random.nextFloat();
+            expected.putFloat(floats[i]);
+        }
+        for (int i = 0; i < size; i++) {
+            doubles[i] = random.nextDouble();
+            expected.putDouble(doubles[i]);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        out.writeShorts(shorts);
+        out.writeChars(chars);
+        out.writeInts(ints);
+        out.writeLongs(longs);
+        out.writeFloats(floats);
+        out.writeDoubles(doubles);
+        assertArrayEquals(expected.array(), bytes.toByteArray());
+
+        LittleEndianDataInputStream in = new BufferedLittleEndianDataInputStream(trickle(bytes.toByteArray(), 777), 100);
+        short[] shorts2 = new short[size];
+        char[] chars2 = new char[size];
+        int[] ints2 = new int[size];
+        long[] longs2 = new long[size];
+        float[] floats2 = new float[size];
+        double[] doubles2 = new double[size];
+        in.readShorts(shorts2);
+        in.readChars(chars2);
+        in.readInts(ints2);
+        in.readLongs(longs2);
+        in.readFloats(floats2);
+        in.readDoubles(doubles2);
+
+        assertArrayEquals(shorts, shorts2);
+        assertArrayEquals(chars, chars2);
+        assertArrayEquals(ints, ints2);
+        assertArrayEquals(longs, longs2);
+        assertArrayEquals(floats, floats2, 0);
+        assertArrayEquals(doubles, doubles2, 0);
+    }
+
+    @Test
+    public void varints_roundTrip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        out.writeUnsignedVarInt(300);
+        out.writeSignedVarInt(-1);
+        assertArrayEquals(new byte[]{(byte) 0xAC, 0x02, 0x01}, bytes.toByteArray());
+
+        Random random = new Random(0x5EL);
+        long[] values = new long[OPS_PER_ROUND * 10];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(4) == 0
+                    ? EDGE_VALUES[random.nextInt(EDGE_VALUES.length)]
+                    : random.nextLong() >> random.nextInt(64);
+        }
+
+        bytes.reset();
+        for (long v : values) {
+            out.writeUnsignedVarInt((int) v);
+            out.writeSignedVarInt((int) v);
+            out.writeUnsignedVarLong(v);
+            out.writeSignedVarLong(v);
+        }
+
+        byte[] encoded = bytes.toByteArray();
+        LittleEndianDataInputStream[] inputs = {
+                new LittleEndianDataInputStream(trickle(encoded, 3)),
+                new BufferedLittleEndianDataInputStream(trickle(encoded, 3), 10),
+                new BufferedLittleEndianDataInputStream(new ByteArrayInputStream(encoded)),
+        };
+        for (LittleEndianDataInputStream in : inputs) {
+            for (long v : values) {
+                assertEquals((int) v, in.readUnsignedVarInt());
+                assertEquals((int) v, in.readSignedVarInt());
+                assertEquals(v, in.readUnsignedVarLong());
+                assertEquals(v, in.readSignedVarLong());
+            }
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void varints_doNotWaitForMoreBytes() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        out.writeUnsignedVarInt(1);
+        out.writeUnsignedVarLong(300);
+        out.writeSignedVarInt(-2);
+        out.writeUnsignedVarLong(5);
+
+        // Like a pipe with no more data written, reading past the end would block forever
+        final ByteArrayInputStream data = new ByteArrayInputStream(bytes.toByteArray());
+        InputStream pipe = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] b = new byte[1];
+                return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (data.available() == 0) {
+                    throw new AssertionError("waiting for bytes after the last varint");
+                }
+                return data.read(b, off, Math.min(len, 2));
+            }
+        };
+
+        LittleEndianDataInputStream in = new BufferedLittleEndianDataInputStream(pipe, 16);
+        assertEquals(1, in.readUnsignedVarInt());
+        assertEquals(300, in.readUnsignedVarLong());
+        assertEquals(-2, in.readSignedVarInt());
+        assertEquals(5, in.readUnsignedVarLong());
+    }
+
+    @Test
+    public void strings_roundTrip() throws IOException {
+        Charset utf8 = Charset.forName("UTF-8");
+        String[] strings = {
+                "", "ascii", "\u00e9t\u00e9", "\u4e2d\u6587", "\ud83d\ude00 emoji", "unpaired \ud800 surrogate", "\udc00",
+        };
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(bytes);
+        for (String s : strings) {
+            bytes.reset();
+            out.writeString(s);
+
+            byte[] expected = s.getBytes(utf8);
+            LittleEndianDataInputStream in = new LittleEndianDataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            assertEquals(expected.length, in.readUnsignedVarInt());
+            byte[] actual = new byte[expected.length];
+            in.readFully(actual);
+            assertArrayEquals(s, expected, actual);
+        }
+
+        Random random = new Random(0x6EL);
+        String[] values = new String[OPS_PER_ROUND];
+        bytes.reset();
+        for (int i = 0; i < values.length; i++) {
+            StringBuilder builder = new StringBuilder();
+            int length = random.nextInt(4) == 0 ? random.nextInt(20000) : random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                builder.appendCodePoint(random.nextBoolean() ? random.nextInt(0x80) : random.nextInt(0x10FFFF));
+            }
+            values[i] = new String(builder.toString().getBytes(utf8), utf8);
+            out.writeString(values[i]);
+        }
+
+        LittleEndianDataInputStream in = new BufferedLittleEndianDataInputStream(trickle(bytes.toByteArray(), 1000), 100);
+        for (String v : values) {
+            assertEquals(v, in.readString());
+        }
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void readLine_splitsLines() throws IOException {
+        StringBuilder longLine = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            longLine.append((char) ('a' + i % 26));
+        }
+        byte[] bytes = ("first\nsecond\r\n\nlone\rcr\n" + longLine + "\nlast").getBytes("ISO-8859-1");
+
+        LittleEndianDataInputStream[] inputs = {
+                new LittleEndianDataInputStream(new ByteArrayInputStream(bytes)),
+                new BufferedLittleEndianDataInputStream(trickle(bytes, 3), 16),
+        };
+        for (LittleEndianDataInputStream in : inputs) {
+            assertEquals("first", in.readLine());
+            assertEquals("second", in.readLine());
+            assertEquals("", in.readLine());
+            assertEquals("lone\rcr", in.readLine());
+            assertEquals(longLine.toString(), in.readLine());
+            assertEquals("last", in.readLine());
+            assertEquals(null, in.readLine());
+        }
+    }
+
+    @Test
+    public void readString_corruptLength() throws IOException {
+        // Length of Integer.MAX_VALUE followed by only a few bytes
+        byte[] bytes = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'a', 'b', 'c'};
+        try {
+            new LittleEndianDataInputStream(new ByteArrayInputStream(bytes)).readString();
+            fail();
+        } catch (EOFException ignored) {
+        }
+
+        // Negative length
+        bytes = new byte[]{(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F};
+        try {
+            new LittleEndianDataInputStream(new ByteArrayInputStream(bytes)).readString();
+            fail();
+        } catch (UTFDataFormatException ignored) {
+        }
+    }
+
+    @Test
+    public void channelWriter_matchesStream() throws IOException {
+        Random random = new Random(0x8EL);
+        Sequence sequence = new Sequence(random, OPS_PER_ROUND * 10);
+        byte[] expected = encodeWithByteBuffer(sequence);
+        float[] floats = new float[1000];
+        for (int i = 0; i < floats.length; i++) {
+            floats[i] = random.nextFloat();
+        }
+
+        ByteArrayOutputStream reference = new ByteArrayOutputStream();
+        LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(reference);
+        out.write(expected);
+        out.writeFloats(floats);
+        out.writeSignedVarLong(-300);
+        out.writeString("\u4e2d\u6587 \ud83d\ude00");
+
+        File file = File.createTempFile("little-endian", ".bin");
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            WritableByteChannel[] channels = {
+                    Channels.newChannel(bytes),
+                    new FileOutputStream(file).getChannel(),
+            };
+            for (WritableByteChannel channel : channels) {
+                LittleEndianChannelWriter writer = new LittleEndianChannelWriter(channel, new DirectByteBufferPool(16, 2), 3);
+                writeSequence(sequence, writer);
+                writer.writeFloats(floats);
+                writer.writeSignedVarLong(-300);
+                writer.writeString("\u4e2d\u6587 \ud83d\ude00");
+                writer.close();
+            }
+
+            assertArrayEquals(reference.toByteArray(), bytes.toByteArray());
+
+            byte[] fileBytes = new byte[(int) file.length()];
+            LittleEndianDataInputStream in = new LittleEndianDataInputStream(new FileInputStream(file));
+            in.readFully(fileBytes);
+            in.close();
+            assertArrayEquals(reference.toByteArray(), fileBytes);
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void channelWriter_closesChannelWhenFlushFails() throws IOException {
+        final boolean[] open = {true};
+        WritableByteChannel channel = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open[0];
+            }
+
+            @Override
+            public void close() {
+                open[0] = false;
+            }
+        };
+
+        LittleEndianChannelWriter writer = new LittleEndianChannelWriter(channel, new DirectByteBufferPool(16, 2), 3);
+        writer.writeLong(1);
+        try {
+            writer.close();
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertTrue(!channel.isOpen());
+    }
+
+    @Test
+    public void blockCompressed_seekAndRead() throws IOException {
+        Random random = new Random(0x9EL);
+        int count = 50000;
+        long[] values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = random.nextInt(1000);
+        }
+
+        File file = File.createTempFile("little-endian", ".blk");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            LittleEndianDataOutputStream out = new LittleEndianDataOutputStream(
+                    new BlockCompressedOutputStream(new FileOutputStream(file), 4096, Deflater.BEST_SPEED));
+            out.writeLongs(values);
+            out.close();
+
+            BlockCompressedInputStream[] streams = {
+                    new BlockCompressedInputStream(file),
+                    new BlockCompressedInputStream(new RandomAccessFile(file, "r").getChannel(), executor, 3),
+            };
+            for (BlockCompressedInputStream stream : streams) {
+                assertEquals(count * 8L, stream.length());
+
+                LittleEndianDataInputStream in = new LittleEndianDataInputStream(stream);
+                long[] actual = new long[count];
+                in.readLongs(actual);
+                assertArrayEquals(values, actual);
+                assertEquals(-1, in.read());
+
+                for (int i = 0; i < 200; i++) {
+                    int index = random.nextInt(count);
+                    stream.seek(index * 8L);
+                    assertEquals(values[index], in.readLong());
+                }
+
+                int from = random.nextInt(count / 2);
+                byte[] range = new byte[8 * (count / 4)];
+                stream.readFully(from * 8L, range, 0, range.length);
+                ByteBuffer buffer = ByteBuffer.wrap(range).order(ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < count / 4; i++) {
+                    assertEquals(values[from + i], buffer.getLong());
+                }
+                in.close();
+            }
+        } finally {
+            executor.shutdown();
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void recordFile_parallelStream() throws IOException {
+        Random random = new Random(0xAEL);
+        int count = 20000;
+        List<String> expected = new ArrayList<>(count);
+
+        File file = File.createTempFile("little-endian", ".rec");
+        try {
+            LittleEndianRecordWriter writer = new LittleEndianRecordWriter(new BufferedOutputStream(new FileOutputStream(file)), 256);
+            for (int i = 0; i < count; i++) {
+                String value = i + ":" + Long.toHexString(random.nextLong() >>> random.nextInt(64));
+                expected.add(value);
+
+                LittleEndianDataOutputStream record = writer.beginRecord();
+                record.writeInt(i);
+                record.write(value.getBytes("UTF-8"));
+                writer.endRecord();
+            }
+            writer.close();
+
+            RecordDecoder<String> decoder = new RecordDecoder<String>() {
+                @Override
+                public String decode(DataInput in, int length) throws IOException {
+                    in.readInt();
+                    byte[] bytes = new byte[length - 4];
+                    in.readFully(bytes);
+                    return new String(bytes, "UTF-8");
+                }
+            };
+
+            LittleEndianRecordFile recordFile = new LittleEndianRecordFile(file);
+            assertEquals(expected, recordFile.stream(decoder, false).collect(Collectors.toList()));
+            assertEquals(expected, recordFile.stream(decoder, true).collect(Collectors.toList()));
+            recordFile.close();
+
+            // Chunks smaller than some records, so records straddle chunk boundaries
+            LittleEndianAsyncRecordReader asyncReader = new LittleEndianAsyncRecordReader(
+                    AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ), 17, 3);
+            assertEquals(expected, asyncReader.readAll(decoder).join());
+            asyncReader.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void recordFile_rejectsCorruptSyncInterval() throws IOException {
+        File file = File.createTempFile("little-endian", ".rec");
+        try {
+            LittleEndianRecordWriter writer = new LittleEndianRecordWriter(new FileOutputStream(file), 64);
+            writer.beginRecord().writeInt(1);
+            writer.endRecord();
+            writer.close();
+
+            for (int syncInterval : new int[]{0, -1}) {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                raf.seek(8);
+                raf.writeInt(syncInterval);
+                raf.close();
+
+                try {
+                    new LittleEndianRecordFile(file).close();
+                    fail();
+                } catch (IOException e) {
+                    assertTrue(e.getMessage(), e.getMessage().contains("sync interval"));
+                }
+            }
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    @Test
+    public void asyncRecordReader_failures() throws IOException {
+        File file = File.createTempFile("little-endian", ".rec");
+        try {
+            LittleEndianRecordWriter writer = new LittleEndianRecordWriter(new BufferedOutputStream(new FileOutputStream(file)), 64);
+            for (int i = 0; i < 50000; i++) {
+                writer.beginRecord().writeInt(i);
+                writer.endRecord();
+            }
+            writer.close();
+
+            RecordDecoder<Integer> decoder = new RecordDecoder<Integer>() {
+                @Override
+                public Integer decode(DataInput in, int length) throws IOException {
+                    return in.readInt();
+                }
+            };
+
+            // Many small chunks that complete quickly
+            LittleEndianAsyncRecordReader reader = new LittleEndianAsyncRecordReader(
+                    AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ), 1, 64);
+            assertEquals(50000, reader.readAll(decoder).join().size());
+            reader.close();
+
+            // Closed while reading
+            reader = new LittleEndianAsyncRecordReader(
+                    AsynchronousFileChannel.open(file.toPath(), StandardOpenOption.READ), 17, 3);
+            CompletableFuture<List<Integer>> future = reader.readAll(decoder);
+            reader.close();
+            assertFailsWith(future, IOException.class);
+
+            // Decoder failure
+            reader = new LittleEndianAsyncRecordReader(file);
+            final int[] decoded = {0};
+            assertFailsWith(reader.read(new RecordDecoder<Integer>() {
+                @Override
+                public Integer decode(DataInput in, int length) throws IOException {
+                    if (++decoded[0] == 100) {
+                        throw new IOException("bad record");
+                    }
+                    return in.readInt();
+                }
+            }, ignored -> {
+            }), IOException.class);
+            assertEquals(100, decoded[0]);
+            reader.close();
+
+            // Truncated in the middle of a record
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(raf.length() - 2);
+            raf.close();
+            reader = new LittleEndianAsyncRecordReader(file);
+            assertFailsWith(reader.readAll(decoder), EOFException.class);
+            reader.close();
+
+            // Not a record file
+            raf = new RandomAccessFile(file, "rw");
+            raf.writeInt(0);
+            raf.close();
+            reader = new LittleEndianAsyncRecordReader(file);
+            assertFailsWith(reader.readAll(decoder), IOException.class);
+            reader.close();
+        } finally {
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+        }
+    }
+
+    private static void assertFailsWith(CompletableFuture<?> future, Class<? extends Throwable> type) {
+        try {
+            future.join();
+            fail();
+        } catch (CompletionException e) {
+            assertTrue(String.valueOf(e.getCause()), type.isInstance(e.getCause()));
+        }
+    }
+
+    @Test
+    public void checkedStreams_verifyFrames() throws IOException {
+        Random random = new Random(0xBEL);
+        Sequence sequence = new Sequence(random, OPS_PER_ROUND * 10);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CheckedLittleEndianDataOutputStream out = new CheckedLittleEndianDataOutputStream(bytes, new CRC32C(), 100);
+        writeSequence(sequence, out);
+        out.flush();
+        writeSequence(sequence, out);
+        out.close();
+
+        byte[] encoded = bytes.toByteArray();
+        LittleEndianDataInputStream in = new CheckedLittleEndianDataInputStream(trickle(encoded, 7), new CRC32C(), 100);
+        assertDecodes(sequence, in);
+        assertDecodes(sequence, in);
+        assertEquals(-1, in.read());
+
+        // Flip a bit in the data of the first frame
+        encoded[10] ^= 0x10;
+        in = new CheckedLittleEndianDataInputStream(new ByteArrayInputStream(encoded), new CRC32C(), 100);
+        try {
+            assertDecodes(sequence, in);
+            fail();
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("checksum mismatch"));
+        }
+    }
+
+    @Test
+    public void checkedStreams_detectTruncationAtFrameBoundary() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CheckedLittleEndianDataOutputStream out = new CheckedLittleEndianDataOutputStream(bytes, new CRC32C(), 100);
+        out.writeInt(1);
+        out.flush();
+        out.writeInt(2);
+        out.close();
+
+        // Two frames of 12 bytes and the end frame of 8 bytes
+        byte[] encoded = bytes.toByteArray();
+        LittleEndianDataInputStream in = new CheckedLittleEndianDataInputStream(new ByteArrayInputStream(encoded), new CRC32C(), 100);
+        assertEquals(1, in.readInt());
+        assertEquals(2, in.readInt());
+        assertEquals(-1, in.read());
+        assertEquals(-1, in.read());
+
+        // Cut after the first frame
+        byte[] truncated = new byte[12];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        in = new CheckedLittleEndianDataInputStream(new ByteArrayInputStream(truncated), new CRC32C(), 100);
+        assertEquals(1, in.readInt());
+        try {
+            in.read();
+            fail();
+        } catch (EOFException ignored) {
+        }
+
+        // Cut before the end frame
+        truncated = new byte[encoded.length - 8];
+        System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+        in = new CheckedLittleEndianDataInputStream(new ByteArrayInputStream(truncated), new CRC32C(), 100);
+        assertEquals(1, in.readInt());
+        assertEquals(2, in.readInt());
+        try {
+            in.read();
+            fail();
+        } catch (EOFException ignored) {
+        }
+    }
+
+    @Test
+    public void truncatedInput_throwsEOFException() throws IOException {
+        byte[] bytes = new byte[7];
+        try {
+            new LittleEndianDataInputStream(new ByteArrayInputStream(bytes)).readLong();
+            fail();
+        } catch (EOFException ignored) {
+        }
+        try {
+            new BufferedLittleEndianDataInputStream(new ByteArrayInputStream(bytes)).readLong();
+            fail();
+        } catch (EOFException ignored) {
+        }
+    }
+}
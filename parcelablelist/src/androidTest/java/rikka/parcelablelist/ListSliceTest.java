@@ -0,0 +1,556 @@
+package rikka.parcelablelist;
+
+import android.os.BadParcelableException;
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.RemoteException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.test.runner.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(AndroidJUnit4.class)
+public class ListSliceTest {
+
+    // Large enough for many slices
+    private static final int COUNT = 50000;
+
+    private static class TestListSlice extends BaseParcelableListSlice<String> {
+
+        TestListSlice(Parcel in) {
+            super(in);
+        }
+
+        @Override
+        public String readElement(Parcel in) {
+            return in.readString();
+        }
+
+        @Override
+        public void writeElement(String element, Parcel dest, int writeFlags) {
+            dest.writeString(element);
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+    }
+
+    private static List<String> createStrings(int count) {
+        List<String> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add("rikka.parcelablelist.test." + (i % 300) + "." + i);
+        }
+        return list;
+    }
+
+    private static List<TestItem> createItems(int count) {
+        List<TestItem> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(new TestItem(i, "item " + i));
+        }
+        return list;
+    }
+
+    /**
+     * Write {@code list} like ParcelableListSlice 2.0, {@code sliceSize} elements per slice.
+     */
+    private static void writeOldLayout(List<TestItem> list, int sliceSize, Parcel dest) {
+        Iterator<TestItem> iterator = list.iterator();
+        dest.writeInt(list.size());
+        writeOldSlice(iterator, sliceSize, dest);
+        if (!iterator.hasNext()) {
+            return;
+        }
+        dest.writeStrongBinder(new Binder() {
+            @Override
+            protected boolean onTransact(int code, @NonNull Parcel data, @Nullable Parcel reply, int flags) {
+                if (code != IBinder.FIRST_CALL_TRANSACTION || reply == null) {
+                    return false;
+                }
+                writeOldSlice(iterator, sliceSize, reply);
+                return true;
+            }
+        });
+    }
+
+    private static void writeOldSlice(Iterator<TestItem> iterator, int sliceSize, Parcel dest) {
+        List<TestItem> slice = new ArrayList<>();
+        while (iterator.hasNext() && slice.size() < sliceSize) {
+            slice.add(iterator.next());
+        }
+        dest.writeInt(slice.size());
+        for (TestItem item : slice) {
+            dest.writeParcelable(item, 0);
+        }
+    }
+
+    /**
+     * Read a list written by ParcelableListSlice like version 2.0 does.
+     */
+    private static List<TestItem> readOldLayout(Parcel in) throws RemoteException {
+        int size = in.readInt();
+        if (size == -1) {
+            return null;
+        }
+        List<TestItem> list = new ArrayList<>(size);
+        readOldSlice(list, in);
+        if (list.size() >= size) {
+            return list;
+        }
+
+        IBinder binder = in.readStrongBinder();
+        do {
+            Parcel data = Parcel.obtain();
+            Parcel reply = Parcel.obtain();
+            try {
+                binder.transact(IBinder.FIRST_CALL_TRANSACTION, data, reply, 0);
+                readOldSlice(list, reply);
+            } finally {
+                data.recycle();
+                reply.recycle();
+            }
+        } while (list.size() < size);
+        return list;
+    }
+
+    private static void readOldSlice(List<TestItem> list, Parcel in) {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            list.add(in.readParcelable(TestItem.class.getClassLoader()));
+        }
+    }
+
+    private static <T extends Parcelable> T roundTrip(Parcelable value, Parcelable.Creator<T> creator) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            value.writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+            return creator.createFromParcel(parcel);
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void createFromParcel_retrievesAllSlices() {
+        List<String> list = createStrings(COUNT);
+        StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.CREATOR);
+
+        List<String> result = slice.getList();
+        assertEquals(list, result);
+        assertSame(result, slice.getList());
+        assertSame(result, slice.getPagedList());
+    }
+
+    @Test
+    public void createFromParcel_null() {
+        StringListSlice slice = roundTrip(new StringListSlice(null), StringListSlice.CREATOR);
+        assertNull(slice.getList());
+    }
+
+    @Test
+    public void lazyCreator_retrievesOnGetList() {
+        List<String> list = createStrings(COUNT);
+        StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+        assertEquals(list, slice.getList());
+    }
+
+    @Test
+    public void lazyCreator_retrievesOnExecutor() {
+        List<String> list = createStrings(COUNT);
+        StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(list, slice.getList(executor));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void lazyCreator_pagedList() {
+        List<String> list = createStrings(COUNT);
+        StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+
+        List<String> paged = slice.getPagedList(2);
+        assertEquals(COUNT, paged.size());
+        for (int i : new int[]{0, COUNT - 1, COUNT / 2, COUNT / 2 - 1, 3}) {
+            assertEquals(list.get(i), paged.get(i));
+        }
+        for (int i = COUNT - 1; i >= COUNT - 5000; i--) {
+            assertEquals(list.get(i), paged.get(i));
+        }
+        assertEquals(list, new ArrayList<>(paged));
+        assertEquals(list, slice.getList());
+    }
+
+    @Test
+    public void lazyCreator_consume() {
+        List<String> list = createStrings(COUNT);
+        StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+
+        List<String> consumed = new ArrayList<>();
+        slice.consume(new BaseParcelableListSlice.ElementConsumer<String>() {
+            @Override
+            public void accept(String element) {
+                consumed.add(element);
+            }
+        });
+        assertEquals(list, consumed);
+
+        try {
+            slice.getList();
+            fail();
+        } catch (IllegalStateException ignored) {
+        }
+    }
+
+    @Test
+    public void createFromParcel_stopsAtInvalidSliceSize() {
+        for (int invalidSize : new int[]{0, -1, 10}) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                parcel.writeInt(3);
+                parcel.writeInt(1);
+                parcel.writeString("first");
+                parcel.writeStrongBinder(new Binder() {
+                    @Override
+                    protected boolean onTransact(int code, @NonNull Parcel data, @Nullable Parcel reply, int flags) {
+                        reply.writeInt(invalidSize);
+                        return true;
+                    }
+                });
+                parcel.setDataPosition(0);
+
+                TestListSlice slice = new TestListSlice(parcel);
+                assertEquals(Collections.singletonList("first"), slice.getList());
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void adaptiveSliceSize_staysWithinBudget() {
+        for (int sliceSize : new int[]{16 * 1024, 1024 * 1024}) {
+            List<String> list = new ArrayList<>(COUNT);
+            for (int i = 0; i < COUNT; i++) {
+                list.add(String.format(Locale.ROOT, "%08d", i));
+            }
+            List<int[]> slices = new ArrayList<>();
+            StringListSlice slice = new StringListSlice(list);
+            slice.setSliceSize(sliceSize);
+            slice.setAdaptiveSliceSize(true);
+            slice.setOnSliceWrittenListener(new BaseParcelableListSlice.OnSliceWrittenListener() {
+                @Override
+                public void onSliceWritten(int budget, int count, int bytes) {
+                    slices.add(new int[]{budget, count, bytes});
+                }
+            });
+
+            assertEquals(list, roundTrip(slice, StringListSlice.CREATOR).getList());
+            assertTrue(slices.size() > 1);
+            // The average element size is only known after the first slice
+            for (int[] written : slices.subList(1, slices.size())) {
+                assertTrue(written[0] >= Math.min(sliceSize, BaseParcelableListSlice.MAX_IPC_SIZE));
+                assertTrue(written[0] <= 256 * 1024);
+                assertTrue(written[1] > 0);
+                assertTrue(written[2] + 4 <= written[0]);
+            }
+        }
+    }
+
+    @Test
+    public void adaptiveSliceSize_growsForSmallElements() {
+        List<String> list = new ArrayList<>(COUNT);
+        for (int i = 0; i < COUNT; i++) {
+            list.add(String.format(Locale.ROOT, "%08d", i));
+        }
+        int[] counts = new int[2];
+        for (int i = 0; i < counts.length; i++) {
+            final int index = i;
+            StringListSlice slice = new StringListSlice(list);
+            slice.setAdaptiveSliceSize(i == 1);
+            slice.setOnSliceWrittenListener(new BaseParcelableListSlice.OnSliceWrittenListener() {
+                @Override
+                public void onSliceWritten(int budget, int count, int bytes) {
+                    counts[index]++;
+                }
+            });
+            assertEquals(list, roundTrip(slice, StringListSlice.CREATOR).getList());
+        }
+        assertTrue(counts[1] < counts[0]);
+    }
+
+    @Test
+    public void metricsListener_measuresTransfer() {
+        ListSliceMetricsCollector collector = new ListSliceMetricsCollector();
+        BaseParcelableListSlice.setMetricsListener(collector);
+        try {
+            List<String> list = createStrings(COUNT);
+            assertEquals(list, roundTrip(new StringListSlice(list), StringListSlice.CREATOR).getList());
+        } finally {
+            BaseParcelableListSlice.setMetricsListener(null);
+        }
+
+        ListSliceMetricsCollector.Stats stats = collector.getStats().get(StringListSlice.class);
+        assertEquals(1, stats.getTransferCount());
+        assertEquals(COUNT, stats.getElementCount());
+        assertTrue(stats.getSliceCount() > 1);
+        assertEquals(stats.getSliceCount() - 1, stats.getTransactionCount());
+        assertTrue(stats.getTotalBytes() > 0);
+    }
+
+    @Test
+    public void metricsListener_excludesConsumer() {
+        ListSliceMetricsCollector collector = new ListSliceMetricsCollector();
+        BaseParcelableListSlice.setMetricsListener(collector);
+        try {
+            final List<String> list = createStrings(COUNT);
+            StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+            slice.consume(new BaseParcelableListSlice.ElementConsumer<String>() {
+                @Override
+                public void accept(String element) {
+                    // The last element is in a retrieved slice
+                    if (element.equals(list.get(COUNT - 1))) {
+                        try {
+                            Thread.sleep(1000);
+                        } catch (InterruptedException e) {
+                            throw new AssertionError(e);
+                        }
+                    }
+                }
+            });
+        } finally {
+            BaseParcelableListSlice.setMetricsListener(null);
+        }
+
+        ListSliceMetricsCollector.Stats stats = collector.getStats().get(StringListSlice.class);
+        assertEquals(1, stats.getTransferCount());
+        assertEquals(COUNT, stats.getElementCount());
+        assertTrue(stats.getReadElementNanos() < 1000000000L);
+    }
+
+    @Test
+    public void metricsListener_pagedListReportsFirstSlice() {
+        ListSliceMetricsCollector collector = new ListSliceMetricsCollector();
+        BaseParcelableListSlice.setMetricsListener(collector);
+        try {
+            List<String> list = createStrings(COUNT);
+            StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+            List<String> paged = slice.getPagedList();
+
+            ListSliceMetricsCollector.Stats stats = collector.getStats().get(StringListSlice.class);
+            assertEquals(1, stats.getTransferCount());
+            assertEquals(1, stats.getSliceCount());
+            assertEquals(0, stats.getTransactionCount());
+
+            assertEquals(list.get(COUNT - 1), paged.get(COUNT - 1));
+            stats = collector.getStats().get(StringListSlice.class);
+            assertEquals(2, stats.getTransferCount());
+            assertEquals(1, stats.getTransactionCount());
+        } finally {
+            BaseParcelableListSlice.setMetricsListener(null);
+        }
+    }
+
+    @Test
+    public void intListSlice_roundTrip() {
+        int[] array = new int[COUNT];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = i;
+        }
+        assertArrayEquals(array, roundTrip(new IntListSlice(array), IntListSlice.CREATOR).getArray());
+        assertArrayEquals(array, roundTrip(new IntListSlice(array), IntListSlice.LAZY_CREATOR).getArray());
+        assertNull(roundTrip(new IntListSlice(null), IntListSlice.CREATOR).getArray());
+    }
+
+    @Test
+    public void longListSlice_roundTrip() {
+        long[] array = new long[COUNT];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = (long) i << 32;
+        }
+        assertArrayEquals(array, roundTrip(new LongListSlice(array), LongListSlice.CREATOR).getArray());
+        assertArrayEquals(array, roundTrip(new LongListSlice(array), LongListSlice.LAZY_CREATOR).getArray());
+    }
+
+    @Test
+    public void intListSlice_firstChunkUsesRemainingBudget() {
+        int[] array = {1, 2, 3};
+        Parcel parcel = Parcel.obtain();
+        try {
+            // Leave no room for the first chunk
+            parcel.writeByteArray(new byte[BaseParcelableListSlice.MAX_IPC_SIZE]);
+            new IntListSlice(array).writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+
+            parcel.createByteArray();
+            assertArrayEquals(array, IntListSlice.CREATOR.createFromParcel(parcel).getArray());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void parcelableListSlice_readsOldLayout() {
+        List<TestItem> list = createItems(1000);
+        Parcel parcel = Parcel.obtain();
+        try {
+            writeOldLayout(list, 300, parcel);
+            parcel.setDataPosition(0);
+
+            //noinspection unchecked
+            ParcelableListSlice<TestItem> slice = ParcelableListSlice.CREATOR.createFromParcel(parcel);
+            assertEquals(list, slice.getList());
+            assertEquals(parcel.dataSize(), parcel.dataPosition());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void parcelableListSlice_writesOldLayout() throws RemoteException {
+        for (List<TestItem> list : Arrays.asList(createItems(10), createItems(COUNT), null)) {
+            Parcel parcel = Parcel.obtain();
+            try {
+                new ParcelableListSlice<>(list).writeToParcel(parcel, 0);
+                parcel.setDataPosition(0);
+
+                assertEquals(list, readOldLayout(parcel));
+                assertEquals(parcel.dataSize(), parcel.dataPosition());
+            } finally {
+                parcel.recycle();
+            }
+        }
+    }
+
+    @Test
+    public void stringListSlice_writesOldLayout() {
+        List<String> list = Arrays.asList("a", null, "b");
+        Parcel parcel = Parcel.obtain();
+        try {
+            new StringListSlice(list).writeToParcel(parcel, 0);
+            parcel.setDataPosition(0);
+
+            assertEquals(3, parcel.readInt());
+            assertEquals(3, parcel.readInt());
+            assertEquals(list, Arrays.asList(parcel.readString(), parcel.readString(), parcel.readString()));
+            assertEquals(parcel.dataSize(), parcel.dataPosition());
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    @Test
+    public void dictionaryStringListSlice_roundTrip() {
+        List<String> list = createStrings(COUNT);
+        for (int i = 0; i < COUNT; i += 7) {
+            list.set(i, i % 2 == 0 ? "repeated" : null);
+        }
+
+        DictionaryStringListSlice slice = roundTrip(new DictionaryStringListSlice(list), DictionaryStringListSlice.CREATOR);
+        List<String> result = slice.getList();
+        assertEquals(list, result);
+        // Equal strings are the same instance, also across slices
+        assertSame(result.get(0), result.get(COUNT - COUNT % 14));
+
+        slice = roundTrip(new DictionaryStringListSlice(list), DictionaryStringListSlice.LAZY_CREATOR);
+        assertEquals(list, new ArrayList<>(slice.getPagedList()));
+    }
+
+    @Test
+    public void typedParcelableListSlice_roundTrip() {
+        List<TestItem> list = createItems(COUNT);
+        list.set(1, null);
+
+        //noinspection unchecked
+        TypedParcelableListSlice<TestItem> slice = roundTrip(new TypedParcelableListSlice<>(list, TestItem.class), TypedParcelableListSlice.CREATOR);
+        assertEquals(list, slice.getList());
+
+        //noinspection unchecked
+        slice = roundTrip(new TypedParcelableListSlice<>(list, TestItem.class), TypedParcelableListSlice.LAZY_CREATOR);
+        assertEquals(list, slice.getList());
+
+        //noinspection unchecked
+        slice = roundTrip(new TypedParcelableListSlice<>(null, TestItem.class), TypedParcelableListSlice.CREATOR);
+        assertNull(slice.getList());
+    }
+
+    @Test
+    public void typedParcelableListSlice_rejectsSubclasses() {
+        List<TestItem> list = Collections.<TestItem>singletonList(new TestItem(0, "item") {
+        });
+        Parcel parcel = Parcel.obtain();
+        try {
+            new TypedParcelableListSlice<>(list, TestItem.class).writeToParcel(parcel, 0);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    /**
+     * Has a CREATOR but is not Parcelable, so it must not be initialized.
+     */
+    public static class NotParcelable {
+
+        public static final Parcelable.Creator<TestItem> CREATOR = TestItem.CREATOR;
+
+        static {
+            sNotParcelableInitialized = true;
+        }
+    }
+
+    private static boolean sNotParcelableInitialized;
+
+    @Test
+    public void typedParcelableListSlice_rejectsNonParcelableClass() {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.writeString(NotParcelable.class.getName());
+            parcel.writeInt(0);
+            parcel.setDataPosition(0);
+            TypedParcelableListSlice.CREATOR.createFromParcel(parcel);
+            fail();
+        } catch (BadParcelableException ignored) {
+        } finally {
+            parcel.recycle();
+        }
+        assertFalse(sNotParcelableInitialized);
+    }
+
+    @Test
+    public void lazyCreator_forwards() {
+        List<String> list = createStrings(COUNT);
+        StringListSlice slice = roundTrip(new StringListSlice(list), StringListSlice.LAZY_CREATOR);
+        StringListSlice forwarded = roundTrip(slice, StringListSlice.CREATOR);
+        assertEquals(list, forwarded.getList());
+    }
+}
@@ -0,0 +1,63 @@
+package rikka.parcelablelist;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.Nullable;
+
+public class TestItem implements Parcelable {
+
+    final int id;
+    final String name;
+
+    public TestItem(int id, String name) {
+        this.id = id;
+        this.name = name;
+    }
+
+    protected TestItem(Parcel in) {
+        id = in.readInt();
+        name = in.readString();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeInt(id);
+        dest.writeString(name);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TestItem)) return false;
+        TestItem item = (TestItem) o;
+        return id == item.id && (name != null ? name.equals(item.name) : item.name == null);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + (name != null ? name.hashCode() : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "TestItem{" + id + ", " + name + "}";
+    }
+
+    public static final Creator<TestItem> CREATOR = new Creator<TestItem>() {
+        @Override
+        public TestItem createFromParcel(Parcel in) {
+            return new TestItem(in);
+        }
+
+        @Override
+        public TestItem[] newArray(int size) {
+            return new TestItem[size];
+        }
+    };
+}
@@ -0,0 +1,196 @@
+package rikka.parcelablelist;
+
+import android.os.Binder;
+import android.os.IBinder;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Base class of slices backed by a primitive array, which is split into chunks of at most
+ * {@link BaseParcelableListSlice#MAX_IPC_SIZE} bytes and each chunk is written with a
+ * single array write.
+ *
+ * @param <A> Type of the array
+ */
+abstract class BaseArrayListSlice<A> implements Parcelable {
+
+    private static final String TAG = "ArrayListSlice";
+    private static final boolean DEBUG = false;
+
+    private final A mArray;
+    private final int mElementSize;
+
+    // Only on the receiver side, kept until all chunks are retrieved if created lazily
+    private final boolean mLazy;
+    private IBinder mBinder;
+    private int mReceived;
+
+    BaseArrayListSlice(@Nullable A array, int elementSize) {
+        mArray = array;
+        mElementSize = elementSize;
+        mLazy = false;
+    }
+
+    /**
+     * @param lazy Only read the first chunk, the others are retrieved by {@link #getArray()}
+     */
+    BaseArrayListSlice(Parcel in, int elementSize, boolean lazy) {
+        mElementSize = elementSize;
+        mLazy = lazy;
+
+        int length = in.readInt();
+        if (length == -1) {
+            mArray = null;
+            return;
+        }
+        mArray = newArray(length);
+
+        mReceived = readChunkFromParcel(in, 0);
+        if (DEBUG) Log.d(TAG, "Retrieved " + mReceived + " of " + length);
+
+        if (mReceived >= length) {
+            return;
+        }
+
+        mBinder = in.readStrongBinder();
+        if (!lazy) {
+            retrieveRemaining();
+        }
+    }
+
+    /**
+     * Get the array. On the receiver side, elements that failed to be retrieved are zero.
+     * <p>
+     * If this is created lazily, the chunks after the first one are retrieved on the first call,
+     * which makes blocking binder calls and should not be done on the main thread.
+     */
+    @Nullable
+    public final A getArray() {
+        if (!mLazy) {
+            return mArray;
+        }
+        synchronized (this) {
+            if (mBinder != null) {
+                retrieveRemaining();
+            }
+        }
+        return mArray;
+    }
+
+    private void retrieveRemaining() {
+        IBinder binder = mBinder;
+        mBinder = null;
+
+        int length = length(mArray);
+        int received = mReceived;
+        while (received < length) {
+            Parcel data = Parcel.obtain();
+            Parcel reply = Parcel.obtain();
+            try {
+                data.writeInt(received);
+                binder.transact(IBinder.FIRST_CALL_TRANSACTION, data, reply, 0);
+
+                int count = readChunkFromParcel(reply, received);
+                if (count == 0) {
+                    Log.w(TAG, "Empty chunk; only received " + received + " of " + length);
+                    return;
+                }
+                received += count;
+
+                if (DEBUG) Log.d(TAG, "Retrieved " + received + " of " + length + " from extra binder");
+            } catch (RemoteException e) {
+                Log.w(TAG, "Failure retrieving array; only received " + received + " of " + length, e);
+                return;
+            } finally {
+                data.recycle();
+                reply.recycle();
+                mReceived = received;
+            }
+        }
+    }
+
+    private int readChunkFromParcel(Parcel in, int start) {
+        A chunk = readArray(in);
+        if (chunk == null) {
+            return 0;
+        }
+        int count = Math.min(length(chunk), length(mArray) - start);
+        System.arraycopy(chunk, 0, mArray, start, count);
+        return count;
+    }
+
+    /**
+     * If this is created lazily, the chunks not retrieved yet are retrieved first.
+     */
+    @Override
+    public final void writeToParcel(Parcel dest, int flags) {
+        A array = getArray();
+        if (array == null) {
+            dest.writeInt(-1);
+            return;
+        }
+
+        int length = length(array);
+        dest.writeInt(length);
+
+        // The first chunk only uses what is left of the budget, so it can be empty
+        int first = Math.min(length, Math.max(0, getChunkLength(dest)));
+        writeChunkToParcel(dest, 0, first);
+
+        if (first >= length) {
+            return;
+        }
+
+        IBinder binder = new Binder() {
+            @Override
+            protected boolean onTransact(int code, @NonNull Parcel data, @Nullable Parcel reply, int flags) {
+                if (code != IBinder.FIRST_CALL_TRANSACTION || reply == null) {
+                    return false;
+                }
+                int start = data.readInt();
+                if (start < 0 || start >= length) {
+                    return false;
+                }
+                // Always make progress, even if the element does not fit
+                int count = Math.min(length - start, Math.max(1, getChunkLength(reply)));
+                writeChunkToParcel(reply, start, count);
+                return true;
+            }
+        };
+        dest.writeStrongBinder(binder);
+    }
+
+    /**
+     * Number of elements that fit in the rest of {@link BaseParcelableListSlice#MAX_IPC_SIZE},
+     * after the length of the array.
+     */
+    private int getChunkLength(Parcel dest) {
+        return (BaseParcelableListSlice.MAX_IPC_SIZE - dest.dataSize() - 4) / mElementSize;
+    }
+
+    private void writeChunkToParcel(Parcel dest, int start, int count) {
+        int length = length(mArray);
+        int end = start + count;
+        writeArray(start == 0 && end == length ? mArray : copyOfRange(mArray, start, end), dest);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    abstract A newArray(int length);
+
+    abstract int length(A array);
+
+    abstract A copyOfRange(A array, int from, int to);
+
+    abstract A readArray(Parcel in);
+
+    abstract void writeArray(A array, Parcel dest);
+}
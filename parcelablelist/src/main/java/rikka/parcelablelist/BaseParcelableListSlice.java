@@ -10,80 +10,475 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Base class of lists that are split into slices when written to a parcel. The first slice is in
+ * the parcel, and the receiver retrieves the others from a {@link Binder} of the sender.
+ * <p>
+ * By default, all slices are retrieved when this is created from the parcel. A subclass can also
+ * be created lazily (such as with {@link ParcelableListSlice#LAZY_CREATOR}), which only reads the
+ * first slice, so the others can be retrieved on a background thread or on demand with
+ * {@link #getList(Executor)}, {@link #consume(ElementConsumer)} or {@link #getPagedList()}.
+ * <p>
+ * On the sender side, the {@link Binder} written to the parcel keeps the list and the position of
+ * the next slice alive until the receiver releases it, and the list must not be modified until
+ * then. For a lazily created receiver, that is until it has retrieved all slices or is garbage
+ * collected.
+ */
 public abstract class BaseParcelableListSlice<T> implements Parcelable {
 
     private static final String TAG = "ParcelableListSlice";
     private static final boolean DEBUG = false;
 
-    private static final int MAX_IPC_SIZE = 64 * 1024;
+    static final int MAX_IPC_SIZE = 64 * 1024;
+
+    /**
+     * Write the slice after the previous one, used by {@link #getList()}.
+     */
+    private static final int TRANSACTION_NEXT_SLICE = IBinder.FIRST_CALL_TRANSACTION;
+
+    /**
+     * Write the slice starting at the index read from data, used by {@link #getPagedList(int)}.
+     */
+    private static final int TRANSACTION_GET_SLICE = IBinder.FIRST_CALL_TRANSACTION + 1;
+
+    private static final int DEFAULT_MAX_PAGED_SLICES = 4;
+
+    // In the adaptive mode, slices of elements up to this size grow above the budget, sharing
+    // ADAPTIVE_TOTAL_SIZE with the other slices in flight, which is well under the 1 MB binder
+    // buffer of the process
+    private static final int SMALL_ELEMENT_SIZE = 256;
+    private static final int MAX_ADAPTIVE_SLICE_SIZE = 256 * 1024;
+    private static final int ADAPTIVE_TOTAL_SIZE = 512 * 1024;
+
+    // Slices being written by this process
+    private static final AtomicInteger sSlicesInFlight = new AtomicInteger();
+
+    private static volatile ListSliceMetrics.Listener sMetricsListener;
+
+    /**
+     * Set a listener for metrics of all list slices received by this process, such as
+     * {@link ListSliceMetricsCollector}. Nothing is measured if it is null.
+     * <p>
+     * A transfer finishes when all slices are retrieved, or when {@link #getPagedList()} is
+     * first called for the slices read so far. Each slice retrieved by the paged list is a
+     * separate transfer.
+     */
+    public static void setMetricsListener(@Nullable ListSliceMetrics.Listener listener) {
+        sMetricsListener = listener;
+    }
+
+    /**
+     * Listener for the size of each slice written.
+     */
+    public interface OnSliceWrittenListener {
+
+        /**
+         * Called on the thread writing the slice, which is a binder thread for slices other
+         * than the first one.
+         *
+         * @param budget Size budget of the slice in bytes
+         * @param count  Number of elements written
+         * @param bytes  Size of the written elements in bytes
+         */
+        void onSliceWritten(int budget, int count, int bytes);
+    }
+
+    /**
+     * Receives elements from {@link #consume(ElementConsumer)}.
+     */
+    public interface ElementConsumer<T> {
+
+        void accept(T element);
+    }
 
     private final List<T> mList;
+    private final Object mHeader;
+
+    // Only on the sender side
+    private int mSliceSize = MAX_IPC_SIZE;
+    private boolean mAdaptiveSliceSize;
+    private OnSliceWrittenListener mOnSliceWrittenListener;
+    private long mWrittenElements;
+    private long mWrittenBytes;
+
+    // Only on the receiver side, kept until all slices are retrieved if created lazily
+    private final int mSize;
+    private final boolean mLazy;
+    private IBinder mBinder;
+    private PagedList mPagedList;
+    private ListSliceMetrics.Listener mMetricsListener;
+    private ListSliceMetrics mMetrics;
+
+    // Slices of an instance are read or written one at a time, so subclasses can keep
+    // state for the current slice
+    private final Object mSliceLock = new Object();
+    private boolean mConsumed;
 
     public BaseParcelableListSlice(@Nullable List<T> list) {
+        this(list, null);
+    }
+
+    /**
+     * @param header Data shared by all elements, see {@link #writeHeaderToParcel(Parcel, int)}
+     */
+    protected BaseParcelableListSlice(@Nullable List<T> list, @Nullable Object header) {
         mList = list;
+        mHeader = header;
+        mSize = list != null ? list.size() : -1;
+        mLazy = false;
+    }
+
+    /**
+     * Set the size budget of each slice, the default is 64 KB. A slice stops at the first
+     * element that reaches the budget, so it can be exceeded by the size of one element.
+     * <p>
+     * This only has effect on the sender side and must be called before this is written to a parcel.
+     *
+     * @param bytes Size budget in bytes
+     */
+    public final void setSliceSize(int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("bytes <= 0");
+        }
+        mSliceSize = bytes;
+    }
+
+    /**
+     * Stop a slice before an element which is expected to reach the budget, using the average
+     * size of the elements written so far, so that slices do not exceed it by one element.
+     * The budget is at most 64 KB in this mode, but if the elements are small and few slices
+     * are being written by this process, slices after the first one grow up to 256 KB, so that
+     * fewer transactions are needed.
+     * <p>
+     * This only has effect on the sender side and must be called before this is written to a parcel.
+     */
+    public final void setAdaptiveSliceSize(boolean enabled) {
+        mAdaptiveSliceSize = enabled;
     }
 
+    public final void setOnSliceWrittenListener(@Nullable OnSliceWrittenListener listener) {
+        mOnSliceWrittenListener = listener;
+    }
+
+    /**
+     * Get the list.
+     * <p>
+     * If this is created lazily, the slices after the first one are retrieved on the first call,
+     * which makes blocking binder calls and should not be done on the main thread.
+     */
     public final List<T> getList() {
+        if (!mLazy) {
+            return mList;
+        }
+        synchronized (this) {
+            checkNotConsumed();
+            if (mBinder != null) {
+                retrieveRemaining(null, null);
+            }
+        }
+        return mList;
+    }
+
+    /**
+     * Same as {@link #getList()}, but if this is created lazily, each transaction for the next
+     * slice runs on {@code executor} while the current slice is being read, so that the round
+     * trips overlap with {@link #readElement(Parcel)}.
+     *
+     * @param executor Executor to run transactions on, such as a thread pool
+     */
+    public final List<T> getList(@NonNull Executor executor) {
+        if (!mLazy) {
+            return mList;
+        }
+        synchronized (this) {
+            checkNotConsumed();
+            if (mBinder != null) {
+                retrieveRemaining(executor, null);
+            }
+        }
         return mList;
     }
 
+    /**
+     * Pass all elements to {@code consumer} in order. If this is created lazily, each slice is
+     * passed as soon as it is retrieved and elements are not kept, so the whole list is never
+     * in memory.
+     * <p>
+     * If this is created lazily, this can only be called once if not all slices are retrieved yet,
+     * and {@link #getList()} and {@link #getPagedList()} cannot be called afterwards.
+     *
+     * @see #consume(ElementConsumer, Executor)
+     */
+    public final void consume(@NonNull ElementConsumer<? super T> consumer) {
+        consume(consumer, null);
+    }
+
+    /**
+     * Same as {@link #consume(ElementConsumer)}, but transacts for the next slice on
+     * {@code executor} like {@link #getList(Executor)}. Elements are still passed on the
+     * calling thread.
+     */
+    public final void consume(@NonNull ElementConsumer<? super T> consumer, @Nullable Executor executor) {
+        synchronized (this) {
+            checkNotConsumed();
+            if (mList == null) {
+                return;
+            }
+
+            for (T element : mList) {
+                consumer.accept(element);
+            }
+            if (mBinder == null) {
+                return;
+            }
+
+            mConsumed = true;
+            retrieveRemaining(executor, consumer);
+            mList.clear();
+        }
+    }
+
+    private void checkNotConsumed() {
+        if (mConsumed) {
+            throw new IllegalStateException("Elements are already consumed");
+        }
+    }
+
+    /**
+     * Get the list, retrieving slices only when their elements are accessed.
+     *
+     * @see #getPagedList(int)
+     */
+    public final List<T> getPagedList() {
+        return getPagedList(DEFAULT_MAX_PAGED_SLICES);
+    }
+
+    /**
+     * Get a read-only list that retrieves the slice containing an element when the element is
+     * first accessed, instead of retrieving all slices like {@link #getList()} does. Only the
+     * {@code maxSlices} most recently used slices are kept.
+     * <p>
+     * This only makes a difference if this is created lazily, if all slices are already retrieved,
+     * the list itself is returned.
+     * If a slice cannot be retrieved, {@link IllegalStateException} is thrown from the list.
+     *
+     * @param maxSlices Maximum number of slices to keep
+     */
+    public final List<T> getPagedList(int maxSlices) {
+        if (maxSlices < 1) {
+            throw new IllegalArgumentException("maxSlices < 1");
+        }
+        synchronized (this) {
+            checkNotConsumed();
+            if (mBinder == null) {
+                return mList;
+            }
+            if (mPagedList == null) {
+                mPagedList = new PagedList(mSize, mBinder, maxSlices, new ArrayList<>(mList));
+
+                // Slices of the paged list are separate transfers, so the first one ends here
+                if (mMetricsListener != null) {
+                    mMetricsListener.onTransferFinished(mMetrics);
+                    mMetricsListener = null;
+                    mMetrics = null;
+                }
+            }
+            return mPagedList;
+        }
+    }
+
     protected BaseParcelableListSlice(Parcel in) {
+        this(in, null, false);
+    }
+
+    /**
+     * @param lazy Only read the first slice, the others are retrieved when the list is accessed
+     */
+    protected BaseParcelableListSlice(Parcel in, boolean lazy) {
+        this(in, null, lazy);
+    }
+
+    /**
+     * @param header Data written by {@link #writeHeaderToParcel(Parcel, int)}, which the subclass
+     *               reads before calling this, such as in a static method
+     * @param lazy   Only read the first slice, the others are retrieved when the list is accessed
+     */
+    protected BaseParcelableListSlice(Parcel in, @Nullable Object header, boolean lazy) {
+        mHeader = header;
         int size = in.readInt();
+        mSize = size;
+        mLazy = lazy;
         if (size == -1) {
             mList = null;
             return;
         }
         mList = new ArrayList<>(size);
 
-        readSliceFromParcel(mList, in);
+        ListSliceMetrics.Listener listener = sMetricsListener;
+        ListSliceMetrics metrics = listener != null ? new ListSliceMetrics(getClass()) : null;
+
+        readSliceFromParcel(mList, in, metrics);
         if (DEBUG) Log.d(TAG, "Retrieved " + mList.size() + " of " + size);
 
         if (mList.size() >= size) {
+            if (listener != null) {
+                listener.onTransferFinished(metrics);
+            }
             return;
         }
 
-        IBinder binder = in.readStrongBinder();
-        do {
-            Parcel data = Parcel.obtain();
-            Parcel reply = Parcel.obtain();
-            try {
-                binder.transact(IBinder.FIRST_CALL_TRANSACTION, data, reply, 0);
-                readSliceFromParcel(mList, reply);
+        mMetricsListener = listener;
+        mMetrics = metrics;
+        mBinder = in.readStrongBinder();
+
+        if (!lazy) {
+            retrieveRemaining(null, null);
+        }
+    }
 
-                if (DEBUG) Log.d(TAG, "Retrieved " + mList.size() + " of " + size + " from extra binder");
+    /**
+     * Retrieve the remaining slices, passing the elements to {@code consumer}, or adding them
+     * to the list if it is null.
+     */
+    private void retrieveRemaining(@Nullable Executor executor, @Nullable ElementConsumer<? super T> consumer) {
+        try {
+            retrieveRemaining(executor, consumer, mMetrics);
+        } finally {
+            if (mMetricsListener != null) {
+                mMetricsListener.onTransferFinished(mMetrics);
+                mMetricsListener = null;
+                mMetrics = null;
+            }
+        }
+    }
+
+    private void retrieveRemaining(@Nullable Executor executor, @Nullable ElementConsumer<? super T> consumer,
+                                   @Nullable ListSliceMetrics metrics) {
+        IBinder binder = mBinder;
+        mBinder = null;
+
+        int received = mList.size();
+        PendingSlice pending = transactNextSlice(binder, executor, metrics);
+        while (pending != null) {
+            Parcel reply;
+            try {
+                reply = pending.get();
             } catch (RemoteException e) {
-                Log.w(TAG, "Failure retrieving array; only received " + mList.size() + " of " + size, e);
+                Log.w(TAG, "Failure retrieving array; only received " + received + " of " + mSize, e);
                 return;
+            } catch (InterruptedException e) {
+                pending.cancel();
+                Thread.currentThread().interrupt();
+                Log.w(TAG, "Interrupted retrieving array; only received " + received + " of " + mSize, e);
+                return;
+            }
+
+            pending = null;
+            boolean read = false;
+            try {
+                int size = reply.readInt();
+                if (size <= 0 || size > mSize - received) {
+                    Log.w(TAG, "Invalid slice size " + size + "; only received " + received + " of " + mSize);
+                    return;
+                }
+                received += size;
+
+                // With an executor, request the next slice before reading this one
+                if (executor != null && received < mSize) {
+                    pending = transactNextSlice(binder, executor, metrics);
+                }
+                // Only readElement is timed, not a slow consumer
+                long readTime = 0;
+                synchronized (mSliceLock) {
+                    onStartReadingSlice();
+                    for (int i = 0; i < size; i++) {
+                        long time = metrics != null ? System.nanoTime() : 0;
+                        T element = readElement(reply);
+                        if (metrics != null) {
+                            readTime += System.nanoTime() - time;
+                        }
+                        if (consumer != null) {
+                            consumer.accept(element);
+                        } else {
+                            mList.add(element);
+                        }
+                    }
+                }
+                if (metrics != null) {
+                    metrics.addSlice(size, reply.dataSize(), readTime);
+                }
+
+                if (DEBUG) Log.d(TAG, "Retrieved " + received + " of " + mSize + " from extra binder");
+                read = true;
             } finally {
-                data.recycle();
                 reply.recycle();
+                if (!read && pending != null) {
+                    // Do not leak the prefetched reply if reading this slice failed
+                    pending.cancel();
+                }
             }
-        } while (mList.size() < size);
+
+            if (executor == null && received < mSize) {
+                pending = transactNextSlice(binder, null, metrics);
+            }
+        }
+    }
+
+    /**
+     * Transact for the next slice on {@code executor}, or on the current thread if it is null.
+     */
+    private static PendingSlice transactNextSlice(IBinder binder, @Nullable Executor executor,
+                                                  @Nullable ListSliceMetrics metrics) {
+        PendingSlice pending = new PendingSlice(binder, metrics);
+        if (executor != null) {
+            executor.execute(pending);
+        } else {
+            pending.run();
+        }
+        return pending;
     }
 
-    private void readSliceFromParcel(List<T> list, Parcel in) {
+    private void readSliceFromParcel(List<T> list, Parcel in, @Nullable ListSliceMetrics metrics) {
+        int start = in.dataPosition();
         int size = in.readInt();
-        for (int i = 0; i < size; i++) {
-            list.add(readElement(in));
+        long time = metrics != null ? System.nanoTime() : 0;
+        synchronized (mSliceLock) {
+            onStartReadingSlice();
+            for (int i = 0; i < size; i++) {
+                list.add(readElement(in));
+            }
+        }
+        if (metrics != null) {
+            metrics.addSlice(size, in.dataPosition() - start, System.nanoTime() - time);
         }
     }
 
+    /**
+     * If this is created lazily, the slices not retrieved yet are retrieved first, so forwarding
+     * it to another process makes blocking binder calls, and fails once it is consumed.
+     */
     @Override
     public final void writeToParcel(Parcel dest, int flags) {
-        if (mList == null) {
+        writeHeaderToParcel(dest, flags);
+
+        List<T> list = getList();
+        if (list == null) {
             dest.writeInt(-1);
             return;
         }
 
-        int size = mList.size();
+        int size = list.size();
         dest.writeInt(size);
 
-        Iterator<T> iterator = mList.iterator();
-        writeSliceToParcel(iterator, dest, flags);
+        Iterator<T> iterator = list.iterator();
+        writeSliceToParcel(iterator, dest, flags, false);
 
         if (!iterator.hasNext()) {
             return;
@@ -93,39 +488,318 @@ public abstract class BaseParcelableListSlice<T> implements Parcelable {
         IBinder binder = new Binder() {
             @Override
             protected boolean onTransact(int code, @NonNull Parcel data, @Nullable Parcel reply, int flags) {
-                if (code != IBinder.FIRST_CALL_TRANSACTION || reply == null) {
+                if (reply == null) {
                     return false;
                 }
-                writeSliceToParcel(iterator, reply, writeFlags);
-                return true;
+                switch (code) {
+                    case TRANSACTION_NEXT_SLICE: {
+                        synchronized (iterator) {
+                            writeSliceToParcel(iterator, reply, writeFlags, true);
+                        }
+                        return true;
+                    }
+                    case TRANSACTION_GET_SLICE: {
+                        int start = data.readInt();
+                        if (start < 0 || start >= size) {
+                            return false;
+                        }
+                        writeSliceToParcel(list.listIterator(start), reply, writeFlags, true);
+                        return true;
+                    }
+                    default:
+                        return false;
+                }
             }
         };
         dest.writeStrongBinder(binder);
     }
 
-    private void writeSliceToParcel(Iterator<T> iterator, Parcel dest, int flags) {
+    /**
+     * @param reply If {@code dest} is a reply that only contains the slice
+     */
+    private void writeSliceToParcel(Iterator<T> iterator, Parcel dest, int flags, boolean reply) {
+        int inFlight = sSlicesInFlight.getAndIncrement();
+        try {
+            writeSliceToParcel(iterator, dest, flags, reply, inFlight);
+        } finally {
+            sSlicesInFlight.decrementAndGet();
+        }
+    }
+
+    private void writeSliceToParcel(Iterator<T> iterator, Parcel dest, int flags, boolean reply, int inFlight) {
+        int budget;
+        int elementSize;
+        if (mAdaptiveSliceSize) {
+            budget = Math.min(mSliceSize, MAX_IPC_SIZE);
+            elementSize = getAverageElementSize();
+            if (reply && elementSize > 0 && elementSize <= SMALL_ELEMENT_SIZE) {
+                budget = Math.max(budget, Math.min(MAX_ADAPTIVE_SLICE_SIZE, ADAPTIVE_TOTAL_SIZE / (inFlight + 1)));
+            }
+        } else {
+            budget = mSliceSize;
+            elementSize = 0;
+        }
+
         int startPosition = dest.dataPosition();
         dest.writeInt(0);
+        int startSize = dest.dataSize();
         int size = 0;
 
-        // This will actually exceed MAX_IPC_SIZE.
+        // This will actually exceed the budget by at most one element, unless the adaptive
+        // mode predicts it from the average element size.
         // However, consider that no one will use binder to send large objects directly
         // and binder has total 1MB buffer size across the process, unless all 16 binder
         // threads are doing this at the same time, exceed a little bit could never be
         // a problem.
         // Also, the system's ParceledListSlice class has the same implementation, we
         // really don't need to consider this.
-        while (iterator.hasNext() && dest.dataSize() < MAX_IPC_SIZE) {
-            writeElement(iterator.next(), dest, flags);
-            size++;
+        synchronized (mSliceLock) {
+            onStartWritingSlice();
+            while (iterator.hasNext() && dest.dataSize() + (size > 0 ? elementSize : 0) < budget) {
+                writeElement(iterator.next(), dest, flags);
+                size++;
+            }
         }
         int position = dest.dataPosition();
         dest.setDataPosition(startPosition);
         dest.writeInt(size);
         dest.setDataPosition(position);
+
+        int bytes = dest.dataSize() - startSize;
+        onSliceWritten(size, bytes);
+
+        OnSliceWrittenListener listener = mOnSliceWrittenListener;
+        if (listener != null) {
+            listener.onSliceWritten(budget, size, bytes);
+        }
+    }
+
+    private synchronized void onSliceWritten(int count, int bytes) {
+        mWrittenElements += count;
+        mWrittenBytes += bytes;
+    }
+
+    private synchronized int getAverageElementSize() {
+        return mWrittenElements > 0 ? (int) (mWrittenBytes / mWrittenElements) : 0;
+    }
+
+    /**
+     * Get the header passed to the constructor, which is available to
+     * {@link #readElement(Parcel)} and {@link #writeElement(Object, Parcel, int)}.
+     */
+    @Nullable
+    protected final Object getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * Write data shared by all elements. It is written once before everything else, so the
+     * subclass can read it before calling {@link #BaseParcelableListSlice(Parcel, Object, boolean)}.
+     * Nothing is written by default.
+     */
+    protected void writeHeaderToParcel(Parcel dest, int flags) {
+    }
+
+    /**
+     * Called before the elements of each slice are written, for elements encoded relative to
+     * other elements in the same slice. Slices of an instance are written one at a time, but
+     * possibly on different binder threads.
+     */
+    protected void onStartWritingSlice() {
+    }
+
+    /**
+     * Called before the elements of each slice are read. Slices can be read in any order.
+     *
+     * @see #onStartWritingSlice()
+     */
+    protected void onStartReadingSlice() {
     }
 
     public abstract T readElement(Parcel in);
 
     public abstract void writeElement(T parcelable, Parcel dest, int writeFlags);
+
+    /**
+     * Transaction for the next slice, possibly running on another thread.
+     */
+    private static final class PendingSlice implements Runnable {
+
+        private final IBinder binder;
+        private final ListSliceMetrics metrics;
+
+        private boolean done;
+        private boolean cancelled;
+        private Parcel reply;
+        private Exception error;
+
+        PendingSlice(IBinder binder, @Nullable ListSliceMetrics metrics) {
+            this.binder = binder;
+            this.metrics = metrics;
+        }
+
+        @Override
+        public void run() {
+            Parcel data = Parcel.obtain();
+            Parcel reply = Parcel.obtain();
+            Exception error = null;
+            try {
+                long time = metrics != null ? System.nanoTime() : 0;
+                binder.transact(TRANSACTION_NEXT_SLICE, data, reply, 0);
+                if (metrics != null) {
+                    metrics.addTransaction(System.nanoTime() - time);
+                }
+            } catch (RemoteException | RuntimeException e) {
+                error = e;
+            } finally {
+                data.recycle();
+            }
+
+            synchronized (this) {
+                if (error != null || cancelled) {
+                    reply.recycle();
+                    reply = null;
+                }
+                this.reply = reply;
+                this.error = error;
+                done = true;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait for the reply, which must be recycled by the caller.
+         */
+        synchronized Parcel get() throws RemoteException, InterruptedException {
+            while (!done) {
+                wait();
+            }
+            if (error instanceof RemoteException) {
+                throw (RemoteException) error;
+            } else if (error != null) {
+                throw (RuntimeException) error;
+            }
+            Parcel reply = this.reply;
+            this.reply = null;
+            return reply;
+        }
+
+        /**
+         * Recycle the reply, now or when the transaction finishes.
+         */
+        synchronized void cancel() {
+            cancelled = true;
+            if (reply != null) {
+                reply.recycle();
+                reply = null;
+            }
+        }
+    }
+
+    private static final class Slice<T> {
+
+        final int start;
+        final List<T> elements;
+
+        Slice(int start, List<T> elements) {
+            this.start = start;
+            this.elements = elements;
+        }
+
+        boolean contains(int index) {
+            return index >= start && index < start + elements.size();
+        }
+    }
+
+    private final class PagedList extends AbstractList<T> {
+
+        private final int size;
+        private final IBinder binder;
+        private final int maxSlices;
+
+        // Slices are requested at multiples of this, so that iterating backwards
+        // does not retrieve a slice for every element
+        private final int sliceSize;
+
+        // Most recently used last
+        private final ArrayList<Slice<T>> slices = new ArrayList<>();
+
+        PagedList(int size, IBinder binder, int maxSlices, List<T> first) {
+            this.size = size;
+            this.binder = binder;
+            this.maxSlices = maxSlices;
+            this.sliceSize = Math.max(1, first.size());
+            slices.add(new Slice<>(0, first));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public T get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+
+            synchronized (slices) {
+                for (int i = slices.size() - 1; i >= 0; i--) {
+                    Slice<T> slice = slices.get(i);
+                    if (slice.contains(index)) {
+                        if (i != slices.size() - 1) {
+                            slices.remove(i);
+                            slices.add(slice);
+                        }
+                        return slice.elements.get(index - slice.start);
+                    }
+                }
+
+                Slice<T> slice = retrieve(index - index % sliceSize);
+                if (!slice.contains(index)) {
+                    // Elements are larger than those in the first slice
+                    slice = retrieve(index);
+                }
+
+                if (slices.size() >= maxSlices) {
+                    slices.remove(0);
+                }
+                slices.add(slice);
+                return slice.elements.get(index - slice.start);
+            }
+        }
+
+        private Slice<T> retrieve(int start) {
+            ListSliceMetrics.Listener listener = sMetricsListener;
+            ListSliceMetrics metrics = listener != null ? new ListSliceMetrics(BaseParcelableListSlice.this.getClass()) : null;
+
+            Parcel data = Parcel.obtain();
+            Parcel reply = Parcel.obtain();
+            try {
+                data.writeInt(start);
+                long time = metrics != null ? System.nanoTime() : 0;
+                binder.transact(TRANSACTION_GET_SLICE, data, reply, 0);
+                if (metrics != null) {
+                    metrics.addTransaction(System.nanoTime() - time);
+                }
+
+                List<T> elements = new ArrayList<>();
+                readSliceFromParcel(elements, reply, metrics);
+                if (elements.isEmpty()) {
+                    throw new IllegalStateException("Empty slice at " + start + " of " + size);
+                }
+
+                if (DEBUG) Log.d(TAG, "Retrieved " + elements.size() + " at " + start + " of " + size + " from extra binder");
+                return new Slice<>(start, elements);
+            } catch (RemoteException e) {
+                throw new IllegalStateException("Failure retrieving slice at " + start + " of " + size, e);
+            } finally {
+                data.recycle();
+                reply.recycle();
+                if (listener != null) {
+                    listener.onTransferFinished(metrics);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,156 @@
+package rikka.parcelablelist;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+
+/**
+ * A list slice that describes how to build a version of a list from an earlier version,
+ * created by {@link VersionedList} and applied by {@link VersionedListCache}.
+ * <p>
+ * The elements are operations applied in order: keep the next elements of the earlier
+ * version, remove them, or insert a new element. A change is a removal followed by an insertion.
+ * If the base version is {@link #NO_VERSION}, it only inserts, which is the whole list.
+ * <p>
+ * Unchanged elements are found with {@link Object#equals(Object)} or the comparator given to
+ * {@link VersionedList}, so elements without either are always sent.
+ *
+ * @param <T> Type of the list elements
+ */
+public class DeltaListSlice<T extends Parcelable> extends BaseParcelableListSlice<DeltaListSlice.Op<T>> {
+
+    public static final int NO_VERSION = -1;
+
+    /**
+     * An operation, the fields are only used by this package.
+     */
+    public static final class Op<T> {
+
+        static final int KEEP = 0;
+        static final int REMOVE = 1;
+        static final int INSERT = 2;
+
+        final int type;
+        int count;
+        final T element;
+
+        Op(int type, int count, T element) {
+            this.type = type;
+            this.count = count;
+            this.element = element;
+        }
+    }
+
+    private final int mBaseVersion;
+    private final int mVersion;
+    private final int mTargetSize;
+
+    DeltaListSlice(@NonNull List<Op<T>> ops, int baseVersion, int version, int targetSize) {
+        super(ops);
+        mBaseVersion = baseVersion;
+        mVersion = version;
+        mTargetSize = targetSize;
+    }
+
+    private DeltaListSlice(Parcel in, boolean lazy) {
+        this(in, in.createIntArray(), lazy);
+    }
+
+    private DeltaListSlice(Parcel in, int[] header, boolean lazy) {
+        super(in, header, lazy);
+        mBaseVersion = header[0];
+        mVersion = header[1];
+        mTargetSize = header[2];
+    }
+
+    /**
+     * Get the version this delta applies to, or {@link #NO_VERSION} if it contains the whole list.
+     */
+    public int getBaseVersion() {
+        return mBaseVersion;
+    }
+
+    /**
+     * Get the version of the list after applying this delta.
+     */
+    public int getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * Get the size of the list after applying this delta.
+     */
+    public int getTargetSize() {
+        return mTargetSize;
+    }
+
+    @Override
+    protected void writeHeaderToParcel(Parcel dest, int flags) {
+        dest.writeIntArray(new int[]{mBaseVersion, mVersion, mTargetSize});
+    }
+
+    @Override
+    public Op<T> readElement(Parcel in) {
+        int type = in.readInt();
+        if (type == Op.INSERT) {
+            return new Op<>(type, 1, in.<T>readParcelable(DeltaListSlice.class.getClassLoader()));
+        }
+        return new Op<>(type, in.readInt(), null);
+    }
+
+    @Override
+    public void writeElement(Op<T> op, Parcel dest, int writeFlags) {
+        dest.writeInt(op.type);
+        if (op.type == Op.INSERT) {
+            dest.writeParcelable(op.element, writeFlags);
+        } else {
+            dest.writeInt(op.count);
+        }
+    }
+
+    @Override
+    public int describeContents() {
+        int contents = 0;
+        final List<Op<T>> list = getList();
+        for (int i = 0; i < list.size(); i++) {
+            Op<T> op = list.get(i);
+            if (op.element != null) {
+                contents |= op.element.describeContents();
+            }
+        }
+        return contents;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static final Creator<DeltaListSlice> CREATOR = new Creator<DeltaListSlice>() {
+        @Override
+        public DeltaListSlice createFromParcel(Parcel in) {
+            return new DeltaListSlice(in, false);
+        }
+
+        @Override
+        public DeltaListSlice[] newArray(int size) {
+            return new DeltaListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first slice, the others are retrieved when
+     * the list is accessed. See {@link BaseParcelableListSlice}.
+     */
+    @SuppressWarnings("rawtypes")
+    public static final Creator<DeltaListSlice> LAZY_CREATOR = new Creator<DeltaListSlice>() {
+        @Override
+        public DeltaListSlice createFromParcel(Parcel in) {
+            return new DeltaListSlice(in, true);
+        }
+
+        @Override
+        public DeltaListSlice[] newArray(int size) {
+            return new DeltaListSlice[size];
+        }
+    };
+}
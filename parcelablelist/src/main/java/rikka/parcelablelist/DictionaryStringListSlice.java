@@ -0,0 +1,133 @@
+package rikka.parcelablelist;
+
+import android.os.Parcel;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A list slice of strings that writes each distinct string once per slice, and an index into
+ * the strings of the slice for every repeat. On the receiver side, equal strings are the
+ * same instance.
+ * <p>
+ * This reduces the size of lists with many repeated strings, such as package names, compared to
+ * {@link StringListSlice}.
+ */
+public class DictionaryStringListSlice extends BaseParcelableListSlice<String> {
+
+    /**
+     * Written instead of a dictionary index, followed by a string that is not in the dictionary yet.
+     */
+    private static final int NEW_ENTRY = -1;
+
+    public static DictionaryStringListSlice emptyList() {
+        return new DictionaryStringListSlice(Collections.emptyList());
+    }
+
+    public DictionaryStringListSlice(@Nullable List<String> list) {
+        super(list, new Dictionary());
+    }
+
+    private DictionaryStringListSlice(Parcel in, boolean lazy) {
+        super(in, new Dictionary(), lazy);
+    }
+
+    private Dictionary getDictionary() {
+        return (Dictionary) getHeader();
+    }
+
+    @Override
+    protected void onStartWritingSlice() {
+        getDictionary().writeIndices.clear();
+    }
+
+    @Override
+    protected void onStartReadingSlice() {
+        getDictionary().readEntries.clear();
+    }
+
+    @Override
+    public String readElement(Parcel in) {
+        Dictionary dictionary = getDictionary();
+        int index = in.readInt();
+        if (index != NEW_ENTRY) {
+            return dictionary.readEntries.get(index);
+        }
+
+        String string = in.readString();
+        if (string != null) {
+            String canonical = dictionary.canonicalStrings.get(string);
+            if (canonical != null) {
+                string = canonical;
+            } else {
+                dictionary.canonicalStrings.put(string, string);
+            }
+        }
+        dictionary.readEntries.add(string);
+        return string;
+    }
+
+    @Override
+    public void writeElement(String string, Parcel dest, int writeFlags) {
+        HashMap<String, Integer> writeIndices = getDictionary().writeIndices;
+        Integer index = writeIndices.get(string);
+        if (index != null) {
+            dest.writeInt(index);
+            return;
+        }
+
+        writeIndices.put(string, writeIndices.size());
+        dest.writeInt(NEW_ENTRY);
+        dest.writeString(string);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * Strings of the current slice, nothing of it is written as the header.
+     */
+    private static final class Dictionary {
+
+        // Only on the sender side
+        final HashMap<String, Integer> writeIndices = new HashMap<>();
+
+        // Only on the receiver side, canonical strings are kept across slices
+        final ArrayList<String> readEntries = new ArrayList<>();
+        final HashMap<String, String> canonicalStrings = new HashMap<>();
+    }
+
+    public static final Creator<DictionaryStringListSlice> CREATOR = new Creator<DictionaryStringListSlice>() {
+        @Override
+        public DictionaryStringListSlice createFromParcel(Parcel in) {
+            return new DictionaryStringListSlice(in, false);
+        }
+
+        @Override
+        public DictionaryStringListSlice[] newArray(int size) {
+            return new DictionaryStringListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first slice, the others are retrieved when
+     * the list is accessed. See {@link BaseParcelableListSlice}.
+     */
+    public static final Creator<DictionaryStringListSlice> LAZY_CREATOR = new Creator<DictionaryStringListSlice>() {
+        @Override
+        public DictionaryStringListSlice createFromParcel(Parcel in) {
+            return new DictionaryStringListSlice(in, true);
+        }
+
+        @Override
+        public DictionaryStringListSlice[] newArray(int size) {
+            return new DictionaryStringListSlice[size];
+        }
+    };
+}
@@ -0,0 +1,77 @@
+package rikka.parcelablelist;
+
+import android.os.Parcel;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+public class IntListSlice extends BaseArrayListSlice<int[]> {
+
+    private static final int ELEMENT_SIZE = 4;
+
+    public static IntListSlice emptyList() {
+        return new IntListSlice(new int[0]);
+    }
+
+    public IntListSlice(@Nullable int[] array) {
+        super(array, ELEMENT_SIZE);
+    }
+
+    private IntListSlice(Parcel in, boolean lazy) {
+        super(in, ELEMENT_SIZE, lazy);
+    }
+
+    @Override
+    int[] newArray(int length) {
+        return new int[length];
+    }
+
+    @Override
+    int length(int[] array) {
+        return array.length;
+    }
+
+    @Override
+    int[] copyOfRange(int[] array, int from, int to) {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    @Override
+    int[] readArray(Parcel in) {
+        return in.createIntArray();
+    }
+
+    @Override
+    void writeArray(int[] array, Parcel dest) {
+        dest.writeIntArray(array);
+    }
+
+    public static final Creator<IntListSlice> CREATOR = new Creator<IntListSlice>() {
+        @Override
+        public IntListSlice createFromParcel(Parcel in) {
+            return new IntListSlice(in, false);
+        }
+
+        @Override
+        public IntListSlice[] newArray(int size) {
+            return new IntListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first chunk, the others are retrieved by
+     * {@link #getArray()}.
+     */
+    public static final Creator<IntListSlice> LAZY_CREATOR = new Creator<IntListSlice>() {
+        @Override
+        public IntListSlice createFromParcel(Parcel in) {
+            return new IntListSlice(in, true);
+        }
+
+        @Override
+        public IntListSlice[] newArray(int size) {
+            return new IntListSlice[size];
+        }
+    };
+}
@@ -0,0 +1,116 @@
+package rikka.parcelablelist;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/**
+ * Metrics of one transfer of a list slice on the receiver side.
+ *
+ * @see BaseParcelableListSlice#setMetricsListener(Listener)
+ */
+public final class ListSliceMetrics {
+
+    public interface Listener {
+
+        /**
+         * Called on the thread that received the last slice of the transfer.
+         */
+        void onTransferFinished(@NonNull ListSliceMetrics metrics);
+    }
+
+    private final Class<?> mListClass;
+    private int mElementCount;
+    private int mSliceCount;
+    private int[] mSliceBytes = new int[4];
+    private int mTransactionCount;
+    private long[] mTransactionNanos = new long[4];
+    private long mReadElementNanos;
+
+    ListSliceMetrics(Class<?> listClass) {
+        mListClass = listClass;
+    }
+
+    synchronized void addSlice(int count, int bytes, long readElementNanos) {
+        if (mSliceCount == mSliceBytes.length) {
+            mSliceBytes = Arrays.copyOf(mSliceBytes, mSliceCount * 2);
+        }
+        mSliceBytes[mSliceCount++] = bytes;
+        mElementCount += count;
+        mReadElementNanos += readElementNanos;
+    }
+
+    synchronized void addTransaction(long nanos) {
+        if (mTransactionCount == mTransactionNanos.length) {
+            mTransactionNanos = Arrays.copyOf(mTransactionNanos, mTransactionCount * 2);
+        }
+        mTransactionNanos[mTransactionCount++] = nanos;
+    }
+
+    /**
+     * Get the class of the list slice, such as {@link StringListSlice}.
+     */
+    @NonNull
+    public Class<?> getListClass() {
+        return mListClass;
+    }
+
+    public synchronized int getElementCount() {
+        return mElementCount;
+    }
+
+    public synchronized int getSliceCount() {
+        return mSliceCount;
+    }
+
+    /**
+     * Get the size of each slice in bytes, including the first one which is in the parcel
+     * containing the list slice.
+     */
+    @NonNull
+    public synchronized int[] getSliceBytes() {
+        return Arrays.copyOf(mSliceBytes, mSliceCount);
+    }
+
+    public synchronized long getTotalBytes() {
+        long bytes = 0;
+        for (int i = 0; i < mSliceCount; i++) {
+            bytes += mSliceBytes[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the number of binder transactions made to retrieve slices after the first one.
+     */
+    public synchronized int getTransactionCount() {
+        return mTransactionCount;
+    }
+
+    /**
+     * Get the time of each transaction in nanoseconds.
+     */
+    @NonNull
+    public synchronized long[] getTransactionNanos() {
+        return Arrays.copyOf(mTransactionNanos, mTransactionCount);
+    }
+
+    /**
+     * Get the total time spent in {@link BaseParcelableListSlice#readElement} in nanoseconds.
+     */
+    public synchronized long getReadElementNanos() {
+        return mReadElementNanos;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return "ListSliceMetrics{" +
+                "listClass=" + mListClass.getName() +
+                ", elementCount=" + mElementCount +
+                ", sliceBytes=" + Arrays.toString(getSliceBytes()) +
+                ", transactionNanos=" + Arrays.toString(getTransactionNanos()) +
+                ", readElementNanos=" + mReadElementNanos +
+                '}';
+    }
+}
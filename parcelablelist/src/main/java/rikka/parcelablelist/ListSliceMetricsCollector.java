@@ -0,0 +1,145 @@
+package rikka.parcelablelist;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Aggregates {@link ListSliceMetrics} in memory by list slice class.
+ * <pre>
+ * ListSliceMetricsCollector collector = new ListSliceMetricsCollector();
+ * BaseParcelableListSlice.setMetricsListener(collector);
+ * ...
+ * Log.d(TAG, collector.getStats().toString());
+ * </pre>
+ */
+public class ListSliceMetricsCollector implements ListSliceMetrics.Listener {
+
+    /**
+     * Aggregated metrics of all transfers of a list slice class.
+     */
+    public static final class Stats {
+
+        private int mTransferCount;
+        private long mElementCount;
+        private long mSliceCount;
+        private long mTotalBytes;
+        private int mMaxSliceBytes;
+        private long mTransactionCount;
+        private long mTransactionNanos;
+        private long mMaxTransactionNanos;
+        private long mReadElementNanos;
+
+        Stats() {
+        }
+
+        Stats(Stats other) {
+            mTransferCount = other.mTransferCount;
+            mElementCount = other.mElementCount;
+            mSliceCount = other.mSliceCount;
+            mTotalBytes = other.mTotalBytes;
+            mMaxSliceBytes = other.mMaxSliceBytes;
+            mTransactionCount = other.mTransactionCount;
+            mTransactionNanos = other.mTransactionNanos;
+            mMaxTransactionNanos = other.mMaxTransactionNanos;
+            mReadElementNanos = other.mReadElementNanos;
+        }
+
+        void add(ListSliceMetrics metrics) {
+            mTransferCount++;
+            mElementCount += metrics.getElementCount();
+            mSliceCount += metrics.getSliceCount();
+            for (int bytes : metrics.getSliceBytes()) {
+                mTotalBytes += bytes;
+                mMaxSliceBytes = Math.max(mMaxSliceBytes, bytes);
+            }
+            for (long nanos : metrics.getTransactionNanos()) {
+                mTransactionCount++;
+                mTransactionNanos += nanos;
+                mMaxTransactionNanos = Math.max(mMaxTransactionNanos, nanos);
+            }
+            mReadElementNanos += metrics.getReadElementNanos();
+        }
+
+        public int getTransferCount() {
+            return mTransferCount;
+        }
+
+        public long getElementCount() {
+            return mElementCount;
+        }
+
+        public long getSliceCount() {
+            return mSliceCount;
+        }
+
+        public long getTotalBytes() {
+            return mTotalBytes;
+        }
+
+        public int getMaxSliceBytes() {
+            return mMaxSliceBytes;
+        }
+
+        public long getTransactionCount() {
+            return mTransactionCount;
+        }
+
+        public long getTransactionNanos() {
+            return mTransactionNanos;
+        }
+
+        public long getMaxTransactionNanos() {
+            return mMaxTransactionNanos;
+        }
+
+        public long getReadElementNanos() {
+            return mReadElementNanos;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "transferCount=" + mTransferCount +
+                    ", elementCount=" + mElementCount +
+                    ", sliceCount=" + mSliceCount +
+                    ", totalBytes=" + mTotalBytes +
+                    ", maxSliceBytes=" + mMaxSliceBytes +
+                    ", transactionCount=" + mTransactionCount +
+                    ", transactionNanos=" + mTransactionNanos +
+                    ", maxTransactionNanos=" + mMaxTransactionNanos +
+                    ", readElementNanos=" + mReadElementNanos +
+                    '}';
+        }
+    }
+
+    private final Map<Class<?>, Stats> mStats = new HashMap<>();
+
+    @Override
+    public synchronized void onTransferFinished(@NonNull ListSliceMetrics metrics) {
+        Stats stats = mStats.get(metrics.getListClass());
+        if (stats == null) {
+            stats = new Stats();
+            mStats.put(metrics.getListClass(), stats);
+        }
+        stats.add(metrics);
+    }
+
+    /**
+     * Get a copy of the aggregated metrics by list slice class.
+     */
+    @NonNull
+    public synchronized Map<Class<?>, Stats> getStats() {
+        Map<Class<?>, Stats> copy = new HashMap<>();
+        for (Map.Entry<Class<?>, Stats> entry : mStats.entrySet()) {
+            copy.put(entry.getKey(), new Stats(entry.getValue()));
+        }
+        return copy;
+    }
+
+    public synchronized void reset() {
+        mStats.clear();
+    }
+}
@@ -0,0 +1,77 @@
+package rikka.parcelablelist;
+
+import android.os.Parcel;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+public class LongListSlice extends BaseArrayListSlice<long[]> {
+
+    private static final int ELEMENT_SIZE = 8;
+
+    public static LongListSlice emptyList() {
+        return new LongListSlice(new long[0]);
+    }
+
+    public LongListSlice(@Nullable long[] array) {
+        super(array, ELEMENT_SIZE);
+    }
+
+    private LongListSlice(Parcel in, boolean lazy) {
+        super(in, ELEMENT_SIZE, lazy);
+    }
+
+    @Override
+    long[] newArray(int length) {
+        return new long[length];
+    }
+
+    @Override
+    int length(long[] array) {
+        return array.length;
+    }
+
+    @Override
+    long[] copyOfRange(long[] array, int from, int to) {
+        return Arrays.copyOfRange(array, from, to);
+    }
+
+    @Override
+    long[] readArray(Parcel in) {
+        return in.createLongArray();
+    }
+
+    @Override
+    void writeArray(long[] array, Parcel dest) {
+        dest.writeLongArray(array);
+    }
+
+    public static final Creator<LongListSlice> CREATOR = new Creator<LongListSlice>() {
+        @Override
+        public LongListSlice createFromParcel(Parcel in) {
+            return new LongListSlice(in, false);
+        }
+
+        @Override
+        public LongListSlice[] newArray(int size) {
+            return new LongListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first chunk, the others are retrieved by
+     * {@link #getArray()}.
+     */
+    public static final Creator<LongListSlice> LAZY_CREATOR = new Creator<LongListSlice>() {
+        @Override
+        public LongListSlice createFromParcel(Parcel in) {
+            return new LongListSlice(in, true);
+        }
+
+        @Override
+        public LongListSlice[] newArray(int size) {
+            return new LongListSlice[size];
+        }
+    };
+}
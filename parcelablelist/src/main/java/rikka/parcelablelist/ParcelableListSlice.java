@@ -18,8 +18,8 @@ public class ParcelableListSlice<T extends Parcelable> extends BaseParcelableLis
         super(list);
     }
 
-    private ParcelableListSlice(Parcel in) {
-        super(in);
+    private ParcelableListSlice(Parcel in, boolean lazy) {
+        super(in, lazy);
     }
 
     @Override
@@ -46,7 +46,24 @@ public class ParcelableListSlice<T extends Parcelable> extends BaseParcelableLis
     public static final Creator<ParcelableListSlice> CREATOR = new Creator<ParcelableListSlice>() {
         @Override
         public ParcelableListSlice createFromParcel(Parcel in) {
-            return new ParcelableListSlice(in);
+            return new ParcelableListSlice(in, false);
+        }
+
+        @Override
+        public ParcelableListSlice[] newArray(int size) {
+            return new ParcelableListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first slice, the others are retrieved when
+     * the list is accessed. See {@link BaseParcelableListSlice}.
+     */
+    @SuppressWarnings("rawtypes")
+    public static final Creator<ParcelableListSlice> LAZY_CREATOR = new Creator<ParcelableListSlice>() {
+        @Override
+        public ParcelableListSlice createFromParcel(Parcel in) {
+            return new ParcelableListSlice(in, true);
         }
 
         @Override
@@ -17,8 +17,8 @@ public class StringListSlice extends BaseParcelableListSlice<String> {
         super(list);
     }
 
-    private StringListSlice(Parcel in) {
-        super(in);
+    private StringListSlice(Parcel in, boolean lazy) {
+        super(in, lazy);
     }
 
     @Override
@@ -39,7 +39,23 @@ public class StringListSlice extends BaseParcelableListSlice<String> {
     public static final Creator<StringListSlice> CREATOR = new Creator<StringListSlice>() {
         @Override
         public StringListSlice createFromParcel(Parcel in) {
-            return new StringListSlice(in);
+            return new StringListSlice(in, false);
+        }
+
+        @Override
+        public StringListSlice[] newArray(int size) {
+            return new StringListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first slice, the others are retrieved when
+     * the list is accessed. See {@link BaseParcelableListSlice}.
+     */
+    public static final Creator<StringListSlice> LAZY_CREATOR = new Creator<StringListSlice>() {
+        @Override
+        public StringListSlice createFromParcel(Parcel in) {
+            return new StringListSlice(in, true);
         }
 
         @Override
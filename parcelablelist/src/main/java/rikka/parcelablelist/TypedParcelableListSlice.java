@@ -0,0 +1,151 @@
+package rikka.parcelablelist;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A list slice whose elements are all instances of one class, and not of its subclasses.
+ * <p>
+ * Unlike {@link ParcelableListSlice}, the class name is written once instead of for every element,
+ * and the receiver looks up the {@code CREATOR} once, so each element takes fewer bytes and more
+ * elements fit in a slice.
+ *
+ * @param <T> Type of the list elements
+ */
+public class TypedParcelableListSlice<T extends Parcelable> extends BaseParcelableListSlice<T> {
+
+    public static <T extends Parcelable> TypedParcelableListSlice<T> emptyList(@NonNull Class<T> type) {
+        return new TypedParcelableListSlice<T>(Collections.<T>emptyList(), type);
+    }
+
+    /**
+     * @param type Class of all elements
+     */
+    public TypedParcelableListSlice(@Nullable List<T> list, @NonNull Class<T> type) {
+        super(list, new Type(type, null));
+    }
+
+    private TypedParcelableListSlice(Parcel in, boolean lazy) {
+        super(in, readType(in), lazy);
+    }
+
+    private static Type readType(Parcel in) {
+        String name = in.readString();
+        if (name == null) {
+            throw new BadParcelableException("Class name of TypedParcelableListSlice is null");
+        }
+
+        ClassLoader classLoader = TypedParcelableListSlice.class.getClassLoader();
+        Class<?> type;
+        Creator<?> creator;
+        try {
+            type = Class.forName(name, false, classLoader);
+            // Like Parcel.readParcelableCreator, do not touch classes that are not Parcelable
+            if (!Parcelable.class.isAssignableFrom(type)) {
+                throw new BadParcelableException("Parcelable protocol requires subclassing from Parcelable on class " + name);
+            }
+            creator = (Creator<?>) type.getField("CREATOR").get(null);
+        } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException | ClassCastException e) {
+            throw new BadParcelableException("Unable to find CREATOR of " + name + ": " + e);
+        }
+        if (creator == null) {
+            throw new BadParcelableException("CREATOR of " + name + " is null");
+        }
+        return new Type(type, creator);
+    }
+
+    @Override
+    protected void writeHeaderToParcel(Parcel dest, int flags) {
+        dest.writeString(((Type) getHeader()).type.getName());
+    }
+
+    @Override
+    public T readElement(Parcel in) {
+        if (in.readInt() == 0) {
+            return null;
+        }
+        Creator<?> creator = ((Type) getHeader()).creator;
+        if (creator instanceof ClassLoaderCreator) {
+            //noinspection unchecked
+            return (T) ((ClassLoaderCreator<?>) creator).createFromParcel(in, TypedParcelableListSlice.class.getClassLoader());
+        }
+        //noinspection unchecked
+        return (T) creator.createFromParcel(in);
+    }
+
+    @Override
+    public void writeElement(T parcelable, Parcel dest, int writeFlags) {
+        if (parcelable == null) {
+            dest.writeInt(0);
+            return;
+        }
+        Class<?> type = ((Type) getHeader()).type;
+        if (parcelable.getClass() != type) {
+            throw new IllegalArgumentException("Expected " + type.getName() + " but got " + parcelable.getClass().getName());
+        }
+        dest.writeInt(1);
+        parcelable.writeToParcel(dest, writeFlags);
+    }
+
+    @Override
+    public int describeContents() {
+        int contents = 0;
+        final List<T> list = getList();
+        for (int i = 0; i < list.size(); i++) {
+            T element = list.get(i);
+            if (element != null) {
+                contents |= element.describeContents();
+            }
+        }
+        return contents;
+    }
+
+    private static final class Type {
+
+        final Class<?> type;
+        // Only on the receiver side
+        final Creator<?> creator;
+
+        Type(Class<?> type, Creator<?> creator) {
+            this.type = type;
+            this.creator = creator;
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    public static final Creator<TypedParcelableListSlice> CREATOR = new Creator<TypedParcelableListSlice>() {
+        @Override
+        public TypedParcelableListSlice createFromParcel(Parcel in) {
+            return new TypedParcelableListSlice(in, false);
+        }
+
+        @Override
+        public TypedParcelableListSlice[] newArray(int size) {
+            return new TypedParcelableListSlice[size];
+        }
+    };
+
+    /**
+     * Same as {@link #CREATOR}, but only reads the first slice, the others are retrieved when
+     * the list is accessed. See {@link BaseParcelableListSlice}.
+     */
+    @SuppressWarnings("rawtypes")
+    public static final Creator<TypedParcelableListSlice> LAZY_CREATOR = new Creator<TypedParcelableListSlice>() {
+        @Override
+        public TypedParcelableListSlice createFromParcel(Parcel in) {
+            return new TypedParcelableListSlice(in, true);
+        }
+
+        @Override
+        public TypedParcelableListSlice[] newArray(int size) {
+            return new TypedParcelableListSlice[size];
+        }
+    };
+}
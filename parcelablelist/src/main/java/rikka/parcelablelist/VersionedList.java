@@ -0,0 +1,287 @@
+package rikka.parcelablelist;
+
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Sender side of a list sent as deltas against the version each client already has.
+ * <pre>
+ * // In the service
+ * public DeltaListSlice&lt;PackageInfo&gt; getPackages(int version) {
+ *     return packages.createSlice(version);
+ * }
+ *
+ * // In the client
+ * List&lt;PackageInfo&gt; list = cache.apply(service.getPackages(cache.getVersion()));
+ * </pre>
+ * The last few versions are kept. If the version of a client is not kept, the whole list is sent.
+ * <p>
+ * Elements are compared with {@link Object#equals(Object)} unless an {@link ElementComparator}
+ * is given. Parcelables that do not override it, such as {@code PackageInfo}, are never equal
+ * to the elements of another list, so every delta replaces the whole list. Give a comparator,
+ * such as one comparing the package name and {@code lastUpdateTime}, for them.
+ *
+ * @param <T> Type of the list elements
+ * @see VersionedListCache
+ */
+public class VersionedList<T extends Parcelable> {
+
+    private static final int DEFAULT_MAX_HISTORY = 8;
+
+    /**
+     * Decides if an element is unchanged between two versions.
+     */
+    public interface ElementComparator<T> {
+
+        boolean areSame(T oldElement, T newElement);
+    }
+
+    private final int mMaxHistory;
+    private final ElementComparator<? super T> mComparator;
+    private final LinkedHashMap<Integer, List<T>> mHistory = new LinkedHashMap<>();
+    private final WeakHashMap<Object, Integer> mAcknowledged = new WeakHashMap<>();
+    private int mVersion = DeltaListSlice.NO_VERSION;
+
+    public VersionedList(@NonNull List<T> list) {
+        this(list, DEFAULT_MAX_HISTORY, null);
+    }
+
+    /**
+     * @param maxHistory Number of versions to keep
+     * @param comparator Comparator of elements, elements are compared with {@link Object#equals(Object)} if null
+     */
+    public VersionedList(@NonNull List<T> list, int maxHistory, @Nullable ElementComparator<? super T> comparator) {
+        if (maxHistory < 1) {
+            throw new IllegalArgumentException("maxHistory < 1");
+        }
+        mMaxHistory = maxHistory;
+        mComparator = comparator;
+        setList(list);
+    }
+
+    /**
+     * Set the list as a new version. The list is copied.
+     *
+     * @return The new version
+     */
+    public synchronized int setList(@NonNull List<T> list) {
+        mVersion++;
+        mHistory.put(mVersion, Collections.unmodifiableList(new ArrayList<>(list)));
+
+        if (mHistory.size() > mMaxHistory) {
+            Integer eldest = mHistory.keySet().iterator().next();
+            mHistory.remove(eldest);
+        }
+        return mVersion;
+    }
+
+    public synchronized int getVersion() {
+        return mVersion;
+    }
+
+    @NonNull
+    public synchronized List<T> getList() {
+        return mHistory.get(mVersion);
+    }
+
+    /**
+     * Record that {@code client} has applied {@code version}, for {@link #createSlice(Object)}.
+     * Clients are weakly referenced, such as the {@link android.os.IBinder} of a client.
+     */
+    public synchronized void acknowledge(@NonNull Object client, int version) {
+        mAcknowledged.put(client, version);
+    }
+
+    /**
+     * Create a delta against the version last acknowledged by {@code client}.
+     */
+    @NonNull
+    public synchronized DeltaListSlice<T> createSlice(@NonNull Object client) {
+        Integer version = mAcknowledged.get(client);
+        return createSlice(version != null ? version : DeltaListSlice.NO_VERSION);
+    }
+
+    /**
+     * Create a delta against {@code baseVersion}, or containing the whole list if the version
+     * is {@link DeltaListSlice#NO_VERSION} or no longer kept.
+     */
+    @NonNull
+    public synchronized DeltaListSlice<T> createSlice(int baseVersion) {
+        List<T> list = mHistory.get(mVersion);
+        List<T> base = baseVersion != DeltaListSlice.NO_VERSION ? mHistory.get(baseVersion) : null;
+        if (base == null) {
+            baseVersion = DeltaListSlice.NO_VERSION;
+            base = Collections.emptyList();
+        }
+        return new DeltaListSlice<>(diff(base, list), baseVersion, mVersion, list.size());
+    }
+
+    private boolean areSame(T oldElement, T newElement) {
+        if (mComparator != null) {
+            return mComparator.areSame(oldElement, newElement);
+        }
+        return oldElement == null ? newElement == null : oldElement.equals(newElement);
+    }
+
+    /**
+     * Find the shortest edit script with the linear space variant of Myers' algorithm. Runs of
+     * insertions and removals between kept elements are written as one removal followed by
+     * the insertions.
+     */
+    private List<DeltaListSlice.Op<T>> diff(List<T> oldList, List<T> newList) {
+        int offset = (oldList.size() + newList.size() + 1) / 2 + 1;
+        int[] forward = new int[2 * offset + 1];
+        int[] backward = new int[2 * offset + 1];
+        EditScript<T> script = new EditScript<>();
+        diff(oldList, 0, oldList.size(), newList, 0, newList.size(), forward, backward, offset, script);
+        return script.finish();
+    }
+
+    private void diff(List<T> oldList, int oldStart, int oldEnd, List<T> newList, int newStart, int newEnd,
+                      int[] forward, int[] backward, int offset, EditScript<T> script) {
+        int prefix = 0;
+        while (oldStart + prefix < oldEnd && newStart + prefix < newEnd
+                && areSame(oldList.get(oldStart + prefix), newList.get(newStart + prefix))) {
+            prefix++;
+        }
+        oldStart += prefix;
+        newStart += prefix;
+        script.keep(prefix);
+
+        int suffix = 0;
+        while (oldEnd - suffix > oldStart && newEnd - suffix > newStart
+                && areSame(oldList.get(oldEnd - suffix - 1), newList.get(newEnd - suffix - 1))) {
+            suffix++;
+        }
+        oldEnd -= suffix;
+        newEnd -= suffix;
+
+        if (oldStart == oldEnd) {
+            for (int j = newStart; j < newEnd; j++) {
+                script.insert(newList.get(j));
+            }
+        } else if (newStart == newEnd) {
+            script.remove(oldEnd - oldStart);
+        } else {
+            // Both ends differ, so there are at least two edits and both halves are smaller
+            int[] snake = findMiddleSnake(oldList, oldStart, oldEnd, newList, newStart, newEnd, forward, backward, offset);
+            diff(oldList, oldStart, oldStart + snake[0], newList, newStart, newStart + snake[1],
+                    forward, backward, offset, script);
+            script.keep(snake[2] - snake[0]);
+            diff(oldList, oldStart + snake[2], oldEnd, newList, newStart + snake[3], newEnd,
+                    forward, backward, offset, script);
+        }
+
+        script.keep(suffix);
+    }
+
+    /**
+     * Find the middle snake of the shortest edit script, searching from both ends.
+     *
+     * @return Start and end of the snake as {x, y, u, v}, relative to the starts
+     */
+    private int[] findMiddleSnake(List<T> oldList, int oldStart, int oldEnd, List<T> newList, int newStart, int newEnd,
+                                  int[] forward, int[] backward, int offset) {
+        int n = oldEnd - oldStart;
+        int m = newEnd - newStart;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        forward[offset + 1] = 0;
+        backward[offset + 1] = 0;
+
+        for (int d = 0, max = (n + m + 1) / 2; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && forward[offset + k - 1] < forward[offset + k + 1])
+                        ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && areSame(oldList.get(oldStart + x), newList.get(newStart + y))) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                if (odd && delta - k >= -(d - 1) && delta - k <= d - 1
+                        && x + backward[offset + delta - k] >= n) {
+                    return new int[]{startX, startY, x, y};
+                }
+            }
+
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || (k != d && backward[offset + k - 1] < backward[offset + k + 1])
+                        ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                int startY = y;
+                while (x < n && y < m && areSame(oldList.get(oldEnd - x - 1), newList.get(newEnd - y - 1))) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                if (!odd && delta - k >= -d && delta - k <= d
+                        && x + forward[offset + delta - k] >= n) {
+                    return new int[]{n - x, m - y, n - startX, m - startY};
+                }
+            }
+        }
+        throw new IllegalStateException("No middle snake");
+    }
+
+    /**
+     * Collects the operations, merging adjacent runs.
+     */
+    private static final class EditScript<T> {
+
+        private final List<DeltaListSlice.Op<T>> ops = new ArrayList<>();
+        private int removed;
+        private final List<T> inserted = new ArrayList<>();
+
+        void keep(int count) {
+            if (count == 0) {
+                return;
+            }
+            flush();
+            if (!ops.isEmpty()) {
+                DeltaListSlice.Op<T> last = ops.get(ops.size() - 1);
+                if (last.type == DeltaListSlice.Op.KEEP) {
+                    last.count += count;
+                    return;
+                }
+            }
+            ops.add(new DeltaListSlice.Op<T>(DeltaListSlice.Op.KEEP, count, null));
+        }
+
+        void remove(int count) {
+            removed += count;
+        }
+
+        void insert(T element) {
+            inserted.add(element);
+        }
+
+        private void flush() {
+            if (removed > 0) {
+                ops.add(new DeltaListSlice.Op<T>(DeltaListSlice.Op.REMOVE, removed, null));
+                removed = 0;
+            }
+            for (T element : inserted) {
+                ops.add(new DeltaListSlice.Op<>(DeltaListSlice.Op.INSERT, 1, element));
+            }
+            inserted.clear();
+        }
+
+        List<DeltaListSlice.Op<T>> finish() {
+            flush();
+            return ops;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package rikka.parcelablelist;
+
+import android.os.Parcelable;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Receiver side of {@link VersionedList}, which keeps the last version received and applies
+ * {@link DeltaListSlice}s to it.
+ *
+ * @param <T> Type of the list elements
+ */
+public class VersionedListCache<T extends Parcelable> {
+
+    private List<T> mList = Collections.emptyList();
+    private int mVersion = DeltaListSlice.NO_VERSION;
+
+    /**
+     * Get the version of the cached list, which is sent to the sender to request a delta.
+     */
+    public synchronized int getVersion() {
+        return mVersion;
+    }
+
+    @NonNull
+    public synchronized List<T> getList() {
+        return mList;
+    }
+
+    /**
+     * Apply the delta to the cached list.
+     *
+     * @return The new list, which is read-only
+     * @throws IllegalStateException if the delta is not against the cached version, not all
+     *                               slices of it are received, or it is malformed
+     */
+    @NonNull
+    public synchronized List<T> apply(@NonNull DeltaListSlice<T> slice) {
+        int baseVersion = slice.getBaseVersion();
+        if (baseVersion != DeltaListSlice.NO_VERSION && baseVersion != mVersion) {
+            throw new IllegalStateException("Delta against version " + baseVersion + " but the cached version is " + mVersion);
+        }
+
+        List<T> base = baseVersion != DeltaListSlice.NO_VERSION ? mList : Collections.<T>emptyList();
+        Applier<T> applier = new Applier<>(base, slice.getTargetSize());
+        slice.consume(applier);
+
+        // Every element of the base version is either kept or removed
+        if (applier.position != base.size()) {
+            throw new IllegalStateException("Delta covers " + applier.position + " of " + base.size() + " elements");
+        }
+        if (applier.list.size() != slice.getTargetSize()) {
+            throw new IllegalStateException("Only received " + applier.list.size() + " of " + slice.getTargetSize());
+        }
+
+        mList = Collections.unmodifiableList(applier.list);
+        mVersion = slice.getVersion();
+        return mList;
+    }
+
+    private static final class Applier<T> implements BaseParcelableListSlice.ElementConsumer<DeltaListSlice.Op<T>> {
+
+        final List<T> base;
+        final ArrayList<T> list;
+
+        // Position in the base version
+        int position;
+
+        Applier(List<T> base, int targetSize) {
+            this.base = base;
+            this.list = new ArrayList<>(targetSize);
+        }
+
+        @Override
+        public void accept(DeltaListSlice.Op<T> op) {
+            switch (op.type) {
+                case DeltaListSlice.Op.KEEP:
+                    checkCount(op);
+                    list.addAll(base.subList(position, position + op.count));
+                    position += op.count;
+                    break;
+                case DeltaListSlice.Op.REMOVE:
+                    checkCount(op);
+                    position += op.count;
+                    break;
+                case DeltaListSlice.Op.INSERT:
+                    list.add(op.element);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown operation " + op.type);
+            }
+        }
+
+        private void checkCount(DeltaListSlice.Op<T> op) {
+            if (op.count < 0 || op.count > base.size() - position) {
+                throw new IllegalStateException("Operation " + op.type + " of " + op.count + " elements at " + position + " of " + base.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package rikka.parcelablelist;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ListSliceMetricsCollectorTest {
+
+    private static ListSliceMetrics createMetrics(Class<?> listClass, int slices, int bytes, long nanos) {
+        ListSliceMetrics metrics = new ListSliceMetrics(listClass);
+        for (int i = 0; i < slices; i++) {
+            if (i > 0) {
+                metrics.addTransaction(nanos * i);
+            }
+            metrics.addSlice(10, bytes * (i + 1), 100);
+        }
+        return metrics;
+    }
+
+    @Test
+    public void metrics_growsPastInitialCapacity() {
+        ListSliceMetrics metrics = createMetrics(StringListSlice.class, 10, 1000, 5);
+
+        assertEquals(100, metrics.getElementCount());
+        assertEquals(10, metrics.getSliceCount());
+        assertEquals(9, metrics.getTransactionCount());
+        assertEquals(55000, metrics.getTotalBytes());
+        assertEquals(1000, metrics.getReadElementNanos());
+        assertArrayEquals(new int[]{1000, 2000, 3000, 4000, 5000, 6000, 7000, 8000, 9000, 10000}, metrics.getSliceBytes());
+        assertArrayEquals(new long[]{5, 10, 15, 20, 25, 30, 35, 40, 45}, metrics.getTransactionNanos());
+    }
+
+    @Test
+    public void collector_aggregatesByClass() {
+        ListSliceMetricsCollector collector = new ListSliceMetricsCollector();
+        collector.onTransferFinished(createMetrics(StringListSlice.class, 3, 1000, 5));
+        collector.onTransferFinished(createMetrics(StringListSlice.class, 1, 500, 5));
+        collector.onTransferFinished(createMetrics(IntListSlice.class, 2, 100, 50));
+
+        Map<Class<?>, ListSliceMetricsCollector.Stats> stats = collector.getStats();
+        assertEquals(2, stats.size());
+
+        ListSliceMetricsCollector.Stats strings = stats.get(StringListSlice.class);
+        assertEquals(2, strings.getTransferCount());
+        assertEquals(40, strings.getElementCount());
+        assertEquals(4, strings.getSliceCount());
+        assertEquals(6500, strings.getTotalBytes());
+        assertEquals(3000, strings.getMaxSliceBytes());
+        assertEquals(2, strings.getTransactionCount());
+        assertEquals(15, strings.getTransactionNanos());
+        assertEquals(10, strings.getMaxTransactionNanos());
+        assertEquals(400, strings.getReadElementNanos());
+
+        ListSliceMetricsCollector.Stats ints = stats.get(IntListSlice.class);
+        assertEquals(1, ints.getTransferCount());
+        assertEquals(1, ints.getTransactionCount());
+        assertEquals(50, ints.getMaxTransactionNanos());
+    }
+
+    @Test
+    public void collector_returnsCopies() {
+        ListSliceMetricsCollector collector = new ListSliceMetricsCollector();
+        collector.onTransferFinished(createMetrics(StringListSlice.class, 1, 1000, 5));
+
+        ListSliceMetricsCollector.Stats stats = collector.getStats().get(StringListSlice.class);
+        collector.onTransferFinished(createMetrics(StringListSlice.class, 1, 1000, 5));
+        assertEquals(1, stats.getTransferCount());
+        assertEquals(2, collector.getStats().get(StringListSlice.class).getTransferCount());
+
+        collector.reset();
+        assertTrue(collector.getStats().isEmpty());
+    }
+}
@@ -0,0 +1,204 @@
+package rikka.parcelablelist;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class VersionedListTest {
+
+    private static class Item implements Parcelable {
+
+        final int id;
+
+        Item(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Item && ((Item) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return "Item{" + id + "}";
+        }
+
+        @Override
+        public int describeContents() {
+            return 0;
+        }
+
+        @Override
+        public void writeToParcel(Parcel dest, int flags) {
+        }
+    }
+
+    private static List<Item> createItems(int from, int to) {
+        List<Item> list = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            list.add(new Item(i));
+        }
+        return list;
+    }
+
+    /**
+     * Apply the delta from {@code oldList} to {@code newList}, and return the operations.
+     */
+    private static List<DeltaListSlice.Op<Item>> applyDelta(List<Item> oldList, List<Item> newList) {
+        VersionedList<Item> versionedList = new VersionedList<>(oldList);
+        VersionedListCache<Item> cache = new VersionedListCache<>();
+        cache.apply(versionedList.createSlice(DeltaListSlice.NO_VERSION));
+        assertEquals(oldList, cache.getList());
+
+        versionedList.setList(newList);
+        DeltaListSlice<Item> slice = versionedList.createSlice(cache.getVersion());
+        assertEquals(0, slice.getBaseVersion());
+        List<DeltaListSlice.Op<Item>> ops = new ArrayList<>(slice.getList());
+
+        assertEquals(newList, cache.apply(slice));
+        assertEquals(1, cache.getVersion());
+        return ops;
+    }
+
+    private static void assertOps(List<DeltaListSlice.Op<Item>> ops, int... typesAndCounts) {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < typesAndCounts.length; i += 2) {
+            expected.add(typesAndCounts[i] + "x" + typesAndCounts[i + 1]);
+        }
+        List<String> actual = new ArrayList<>();
+        for (DeltaListSlice.Op<Item> op : ops) {
+            actual.add(op.type + "x" + op.count);
+        }
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void diff_unchanged() {
+        List<Item> list = createItems(0, 100);
+        assertOps(applyDelta(list, list), DeltaListSlice.Op.KEEP, 100);
+    }
+
+    @Test
+    public void diff_insertRun() {
+        List<Item> oldList = createItems(0, 100);
+        List<Item> newList = new ArrayList<>(oldList);
+        newList.addAll(50, createItems(1000, 1005));
+
+        List<DeltaListSlice.Op<Item>> ops = applyDelta(oldList, newList);
+        assertEquals(7, ops.size());
+        assertOps(ops.subList(0, 1), DeltaListSlice.Op.KEEP, 50);
+        assertOps(ops.subList(6, 7), DeltaListSlice.Op.KEEP, 50);
+    }
+
+    @Test
+    public void diff_removeRun() {
+        List<Item> oldList = createItems(0, 100);
+        List<Item> newList = new ArrayList<>(oldList);
+        newList.subList(10, 20).clear();
+
+        assertOps(applyDelta(oldList, newList),
+                DeltaListSlice.Op.KEEP, 10, DeltaListSlice.Op.REMOVE, 10, DeltaListSlice.Op.KEEP, 80);
+    }
+
+    @Test
+    public void diff_changeRun() {
+        List<Item> oldList = createItems(0, 100);
+        List<Item> newList = new ArrayList<>(oldList);
+        for (int i = 30; i < 33; i++) {
+            newList.set(i, new Item(1000 + i));
+        }
+
+        assertOps(applyDelta(oldList, newList),
+                DeltaListSlice.Op.KEEP, 30, DeltaListSlice.Op.REMOVE, 3,
+                DeltaListSlice.Op.INSERT, 1, DeltaListSlice.Op.INSERT, 1, DeltaListSlice.Op.INSERT, 1,
+                DeltaListSlice.Op.KEEP, 67);
+    }
+
+    @Test
+    public void diff_fromEmpty() {
+        List<Item> list = createItems(0, 3);
+        VersionedList<Item> versionedList = new VersionedList<>(list);
+        assertOps(versionedList.createSlice(DeltaListSlice.NO_VERSION).getList(),
+                DeltaListSlice.Op.INSERT, 1, DeltaListSlice.Op.INSERT, 1, DeltaListSlice.Op.INSERT, 1);
+        assertOps(applyDelta(list, new ArrayList<Item>()), DeltaListSlice.Op.REMOVE, 3);
+    }
+
+    @Test
+    public void diff_isShortest() {
+        Random random = new Random(42);
+        for (int iteration = 0; iteration < 500; iteration++) {
+            List<Item> oldList = new ArrayList<>();
+            List<Item> newList = new ArrayList<>();
+            for (int i = random.nextInt(40); i > 0; i--) {
+                oldList.add(new Item(random.nextInt(8)));
+            }
+            for (int i = random.nextInt(40); i > 0; i--) {
+                newList.add(new Item(random.nextInt(8)));
+            }
+
+            int edits = 0;
+            for (DeltaListSlice.Op<Item> op : applyDelta(oldList, newList)) {
+                if (op.type != DeltaListSlice.Op.KEEP) {
+                    edits += op.count;
+                }
+            }
+            assertEquals(oldList + " -> " + newList,
+                    oldList.size() + newList.size() - 2 * longestCommonSubsequence(oldList, newList), edits);
+        }
+    }
+
+    @Test
+    public void apply_rejectsMalformedDelta() {
+        List<Item> list = createItems(0, 5);
+        VersionedListCache<Item> cache = new VersionedListCache<>();
+        cache.apply(new VersionedList<>(list).createSlice(DeltaListSlice.NO_VERSION));
+
+        List<List<DeltaListSlice.Op<Item>>> deltas = new ArrayList<>();
+        // Unknown type
+        deltas.add(Arrays.asList(new DeltaListSlice.Op<Item>(DeltaListSlice.Op.KEEP, 5, null),
+                new DeltaListSlice.Op<Item>(7, 1, null)));
+        // Does not cover the whole base version, but has the target size
+        deltas.add(Collections.singletonList(new DeltaListSlice.Op<Item>(DeltaListSlice.Op.KEEP, 5 - 2, null)));
+        // Past the end of the base version
+        deltas.add(Collections.singletonList(new DeltaListSlice.Op<Item>(DeltaListSlice.Op.KEEP, 6, null)));
+        deltas.add(Collections.singletonList(new DeltaListSlice.Op<Item>(DeltaListSlice.Op.REMOVE, -1, null)));
+
+        int[] targetSizes = {5, 3, 6, 0};
+        for (int i = 0; i < deltas.size(); i++) {
+            try {
+                cache.apply(new DeltaListSlice<>(deltas.get(i), 0, 1, targetSizes[i]));
+                fail("delta " + i);
+            } catch (IllegalStateException ignored) {
+            }
+            assertEquals(0, cache.getVersion());
+            assertEquals(list, cache.getList());
+        }
+    }
+
+    private static int longestCommonSubsequence(List<Item> a, List<Item> b) {
+        int[][] lengths = new int[a.size() + 1][b.size() + 1];
+        for (int i = 1; i <= a.size(); i++) {
+            for (int j = 1; j <= b.size(); j++) {
+                lengths[i][j] = a.get(i - 1).equals(b.get(j - 1))
+                        ? lengths[i - 1][j - 1] + 1 : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.size()][b.size()];
+    }
+}
@@ -1,28 +1,37 @@
 package rikka.preference;
 
+import android.content.ContentProviderClient;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.DeadObjectException;
 import android.os.Handler;
+import android.os.IBinder;
 import android.os.Looper;
 import android.os.Message;
+import android.os.RemoteException;
 
 import androidx.annotation.Nullable;
 
+import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static rikka.preference.PreferenceProvider.EXTRA_DATA;
 import static rikka.preference.PreferenceProvider.EXTRA_EDITOR_ACTIONS;
 import static rikka.preference.PreferenceProvider.EXTRA_EDITOR_KEYS;
 import static rikka.preference.PreferenceProvider.EXTRA_EDITOR_VALUES;
+import static rikka.preference.PreferenceProvider.EXTRA_KEYS;
 import static rikka.preference.PreferenceProvider.EXTRA_RESULT;
+import static rikka.preference.PreferenceProvider.EXTRA_TYPES;
 import static rikka.preference.PreferenceProvider.METHOD_CONTAINS;
 import static rikka.preference.PreferenceProvider.METHOD_EDITOR_APPLY;
 import static rikka.preference.PreferenceProvider.METHOD_EDITOR_COMMIT;
@@ -31,17 +40,52 @@ import static rikka.preference.PreferenceProvider.METHOD_GET_BOOLEAN;
 import static rikka.preference.PreferenceProvider.METHOD_GET_FLOAT;
 import static rikka.preference.PreferenceProvider.METHOD_GET_INT;
 import static rikka.preference.PreferenceProvider.METHOD_GET_LONG;
+import static rikka.preference.PreferenceProvider.METHOD_GET_MANY;
 import static rikka.preference.PreferenceProvider.METHOD_GET_STRING;
 import static rikka.preference.PreferenceProvider.METHOD_GET_STRING_SET;
 import static rikka.preference.PreferenceProvider.METHOD_REGISTER_LISTENER;
 import static rikka.preference.PreferenceProvider.METHOD_UNREGISTER_LISTENER;
+import static rikka.preference.PreferenceProvider.TYPE_BOOLEAN;
+import static rikka.preference.PreferenceProvider.TYPE_FLOAT;
+import static rikka.preference.PreferenceProvider.TYPE_INT;
+import static rikka.preference.PreferenceProvider.TYPE_LONG;
+import static rikka.preference.PreferenceProvider.TYPE_STRING;
+import static rikka.preference.PreferenceProvider.TYPE_STRING_SET;
 
-public class MultiProcessPreference implements SharedPreferences, Handler.Callback {
+public class MultiProcessPreference implements SharedPreferences, Handler.Callback, Closeable {
 
     private static final Object CONTENT = new Object();
     private static final int MSG_PREFERENCE_CHANGED = 100;
 
     private final Object mLock = new Object();
+    private boolean mRemoteListenerRegistered;
+    // Binder of the provider process the remote listener is registered to
+    private IBinder mProviderToken;
+    private final AtomicBoolean mProviderDied = new AtomicBoolean();
+
+    private final IBinder.DeathRecipient mProviderDeathRecipient = new IBinder.DeathRecipient() {
+
+        @Override
+        public void binderDied() {
+            synchronized (mLock) {
+                if (mProviderToken == null) {
+                    // Handled by a call that found the provider dead
+                    return;
+                }
+            }
+
+            ContentProviderClient client;
+            synchronized (mClientLock) {
+                client = mClient;
+            }
+            onProviderDied(client);
+
+            // Register again now instead of on the next call, so changes are not missed
+            if (mProviderDied.compareAndSet(true, false)) {
+                onProviderRestarted();
+            }
+        }
+    };
 
     private final WeakHashMap<OnSharedPreferenceChangeListener, Object> mListeners =
             new WeakHashMap<>();
@@ -50,6 +94,10 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
 
         @Override
         public void onPreferenceChanged(String key) {
+            if (mCache != null) {
+                mCache.invalidate(key);
+            }
+
             Message msg = Message.obtain();
             msg.what = MSG_PREFERENCE_CHANGED;
             msg.obj = key;
@@ -59,17 +107,177 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
 
     private final ContentResolver mContentResolver;
     private final Handler mHandler;
-    private final Uri mUri;
+    private final String mAuthority;
+
+    private final Object mClientLock = new Object();
+    private ContentProviderClient mClient;
+
+    // Null if not in the cached mode
+    private final PreferenceCache mCache;
 
     public MultiProcessPreference(Context context, String authority) {
+        this(context, authority, false);
+    }
+
+    /**
+     * Create a MultiProcessPreference.
+     * <p>
+     * In the cached mode, all preferences are retrieved with one {@link #getAll()} call on the
+     * first read, and reads are served from memory afterwards. Preferences changed by any
+     * process are retrieved again on their next read, and local edits update the cache.
+     *
+     * @param cached Use the cached mode
+     */
+    public MultiProcessPreference(Context context, String authority, boolean cached) {
         mContentResolver = context.getContentResolver();
         mHandler = new Handler(Looper.getMainLooper(), this);
-        mUri = new Uri.Builder().scheme("content").authority(authority).build();
+        mAuthority = authority;
+        mCache = cached ? new PreferenceCache() : null;
+    }
+
+    private ContentProviderClient acquireClient() {
+        synchronized (mClientLock) {
+            if (mClient == null) {
+                mClient = mContentResolver.acquireUnstableContentProviderClient(mAuthority);
+                if (mClient == null) {
+                    throw new IllegalArgumentException("Unknown authority " + mAuthority);
+                }
+            }
+            return mClient;
+        }
+    }
+
+    private void releaseClient(ContentProviderClient client) {
+        synchronized (mClientLock) {
+            if (mClient != client) {
+                // Already released by another thread
+                return;
+            }
+            mClient = null;
+        }
+
+        if (Build.VERSION.SDK_INT >= 24) {
+            client.close();
+        } else {
+            //noinspection deprecation
+            client.release();
+        }
+    }
+
+    /**
+     * Call the provider through the held client. If the provider process has died, the client
+     * is acquired again, which restarts the provider, and the call is retried once.
+     *
+     * @return The reply, or null if the call fails, like {@link ContentResolver#call}
+     */
+    @Nullable
+    private Bundle call(String method, @Nullable String arg, @Nullable Bundle extras) {
+        try {
+            return callOrThrow(method, arg, extras);
+        } catch (RemoteException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Same as {@link #call}, but throws if the call fails, so that a failed call can be told
+     * from a null reply, which some methods return for a preference that does not exist.
+     */
+    @Nullable
+    private Bundle callOrThrow(String method, @Nullable String arg, @Nullable Bundle extras) throws RemoteException {
+        Bundle reply;
+        ContentProviderClient client = acquireClient();
+        try {
+            reply = client.call(method, arg, extras);
+        } catch (DeadObjectException e) {
+            onProviderDied(client);
+
+            client = acquireClient();
+            try {
+                reply = client.call(method, arg, extras);
+            } catch (DeadObjectException e2) {
+                onProviderDied(client);
+                throw e2;
+            }
+        }
+
+        if (mProviderDied.compareAndSet(true, false)) {
+            onProviderRestarted();
+        }
+        return reply;
+    }
+
+    /**
+     * Release the client of the dead provider process, and drop the cache since everything
+     * changed while the provider was dead is not notified.
+     */
+    private void onProviderDied(@Nullable ContentProviderClient client) {
+        synchronized (mLock) {
+            if (mProviderToken != null) {
+                mProviderToken.unlinkToDeath(mProviderDeathRecipient, 0);
+                mProviderToken = null;
+            }
+        }
+        if (client != null) {
+            releaseClient(client);
+        }
+        if (mCache != null) {
+            mCache.invalidate(null);
+        }
+        mProviderDied.set(true);
+    }
+
+    /**
+     * Register the remote listener again, which is lost with the old provider process.
+     */
+    private void onProviderRestarted() {
+        synchronized (mLock) {
+            if (mRemoteListenerRegistered) {
+                mRemoteListenerRegistered = false;
+                registerRemoteListener();
+            }
+        }
+    }
+
+    /**
+     * Unregister from the provider, drop the cache and release the held
+     * {@link ContentProviderClient}. Listeners registered with
+     * {@link #registerOnSharedPreferenceChangeListener} no longer receive changes.
+     * <p>
+     * The client will be acquired again if this instance is used after closing.
+     */
+    @Override
+    public void close() {
+        synchronized (mLock) {
+            if (mRemoteListenerRegistered) {
+                unregisterRemoteListener();
+            }
+        }
+        if (mCache != null) {
+            mCache.invalidate(null);
+        }
+
+        ContentProviderClient client;
+        synchronized (mClientLock) {
+            client = mClient;
+        }
+        if (client != null) {
+            releaseClient(client);
+        }
     }
 
     @Override
     public Map<String, ?> getAll() {
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_ALL, null, null);
+        if (mCache != null) {
+            Map<String, ?> all = mCache.getAll();
+            return all != null ? all : loadCache();
+        }
+
+        return getAllFromProvider();
+    }
+
+    private Map<String, ?> getAllFromProvider() {
+        Bundle reply = call(METHOD_GET_ALL, null, null);
         if (reply == null)
             return null;
 
@@ -77,12 +285,177 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
         return (Map<String, ?>) reply.getSerializable(EXTRA_RESULT);
     }
 
+    /**
+     * Get the values of many keys with one call, instead of one call for each key. In the cached
+     * mode, only the keys that are not in the cache are retrieved.
+     *
+     * @return A map contains the keys that exist, or null if the call fails
+     */
+    public Map<String, ?> getMany(String... keys) {
+        if (mCache == null) {
+            return getManyFromProvider(keys);
+        }
+
+        if (!mCache.isLoaded()) {
+            Map<String, ?> all = loadCache();
+            if (all == null) {
+                return null;
+            }
+            HashMap<String, Object> result = new HashMap<>();
+            for (String key : keys) {
+                if (all.containsKey(key)) {
+                    result.put(key, all.get(key));
+                }
+            }
+            return result;
+        }
+
+        HashMap<String, Object> result = new HashMap<>();
+        ArrayList<String> staleKeys = new ArrayList<>();
+        int generation = mCache.getGeneration();
+        for (String key : keys) {
+            Object value = mCache.get(key);
+            if (value == PreferenceCache.NOT_CACHED) {
+                staleKeys.add(key);
+            } else if (value != PreferenceCache.ABSENT) {
+                result.put(key, value);
+            }
+        }
+
+        if (staleKeys.isEmpty()) {
+            return result;
+        }
+
+        Map<String, Object> values = getManyFromProvider(staleKeys.toArray(new String[0]));
+        if (values == null) {
+            return null;
+        }
+        for (String key : staleKeys) {
+            Object value = mCache.put(generation, key, values.containsKey(key) ? values.get(key) : PreferenceCache.ABSENT);
+            if (value != PreferenceCache.ABSENT) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
+    @Nullable
+    private Map<String, Object> getManyFromProvider(String[] keys) {
+        Bundle extras = new Bundle();
+        extras.putStringArray(EXTRA_KEYS, keys);
+
+        Bundle reply = call(METHOD_GET_MANY, null, extras);
+        if (reply == null)
+            return null;
+
+        int[] types = reply.getIntArray(EXTRA_TYPES);
+        Bundle result = reply.getBundle(EXTRA_RESULT);
+        if (types == null || types.length != keys.length || result == null)
+            return null;
+
+        HashMap<String, Object> values = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            switch (types[i]) {
+                case TYPE_STRING:
+                    values.put(key, result.getString(key));
+                    break;
+                case TYPE_STRING_SET: {
+                    ArrayList<String> list = result.getStringArrayList(key);
+                    values.put(key, list != null ? new HashSet<>(list) : null);
+                    break;
+                }
+                case TYPE_INT:
+                    values.put(key, result.getInt(key));
+                    break;
+                case TYPE_LONG:
+                    values.put(key, result.getLong(key));
+                    break;
+                case TYPE_FLOAT:
+                    values.put(key, result.getFloat(key));
+                    break;
+                case TYPE_BOOLEAN:
+                    values.put(key, result.getBoolean(key));
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Retrieve all preferences and replace the cache with them, unless a preference is
+     * changed in the meantime.
+     */
+    private Map<String, ?> loadCache() {
+        // Register first so that no change after getAll is missed
+        registerRemoteListener();
+
+        int generation = mCache.getGeneration();
+        Map<String, ?> all = getAllFromProvider();
+        return all != null ? mCache.load(generation, all) : null;
+    }
+
+    /**
+     * Get the value from the cache, retrieving it if the cache is not loaded or the value is stale.
+     * If the call fails, nothing is cached.
+     *
+     * @return The value, or {@link PreferenceCache#ABSENT} if there is no such preference or
+     * the call fails
+     */
+    private Object getCachedValue(String key, String method) {
+        Object value = mCache.get(key);
+        if (value != PreferenceCache.NOT_CACHED) {
+            return value;
+        }
+
+        if (!mCache.isLoaded()) {
+            Map<String, ?> all = loadCache();
+            return all != null && all.containsKey(key) ? all.get(key) : PreferenceCache.ABSENT;
+        }
+
+        int generation = mCache.getGeneration();
+        Bundle reply;
+        try {
+            reply = callOrThrow(method, key, null);
+        } catch (RemoteException e) {
+            return PreferenceCache.ABSENT;
+        }
+        return mCache.put(generation, key, reply != null ? getResult(reply, method) : PreferenceCache.ABSENT);
+    }
+
+    /**
+     * Read the value in the reply of a get method with the getter of its type.
+     */
+    private static Object getResult(Bundle reply, String method) {
+        switch (method) {
+            case METHOD_GET_STRING:
+                return reply.getString(EXTRA_RESULT);
+            case METHOD_GET_STRING_SET:
+                return reply.getSerializable(EXTRA_RESULT);
+            case METHOD_GET_INT:
+                return reply.getInt(EXTRA_RESULT);
+            case METHOD_GET_LONG:
+                return reply.getLong(EXTRA_RESULT);
+            case METHOD_GET_FLOAT:
+                return reply.getFloat(EXTRA_RESULT);
+            case METHOD_GET_BOOLEAN:
+                return reply.getBoolean(EXTRA_RESULT);
+            default:
+                throw new IllegalArgumentException("unsupported method " + method);
+        }
+    }
+
     @Nullable
     @Override
     public String getString(String key, @Nullable String defValue) {
         Objects.requireNonNull(key);
 
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_STRING, key, null);
+        if (mCache != null) {
+            Object value = getCachedValue(key, METHOD_GET_STRING);
+            return value != PreferenceCache.ABSENT && value != null ? (String) value : defValue;
+        }
+
+        Bundle reply = call(METHOD_GET_STRING, key, null);
         if (reply == null)
             return defValue;
 
@@ -93,7 +466,14 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     @Override
     public Set<String> getStringSet(String key, @Nullable Set<String> defValues) {
         Objects.requireNonNull(key);
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_STRING_SET, key, null);
+
+        if (mCache != null) {
+            Object value = getCachedValue(key, METHOD_GET_STRING_SET);
+            //noinspection unchecked
+            return value != PreferenceCache.ABSENT && value != null ? (Set<String>) value : defValues;
+        }
+
+        Bundle reply = call(METHOD_GET_STRING_SET, key, null);
         if (reply == null)
             return defValues;
 
@@ -105,7 +485,12 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     public int getInt(String key, int defValue) {
         Objects.requireNonNull(key);
 
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_INT, key, null);
+        if (mCache != null) {
+            Object value = getCachedValue(key, METHOD_GET_INT);
+            return value != PreferenceCache.ABSENT ? (Integer) value : defValue;
+        }
+
+        Bundle reply = call(METHOD_GET_INT, key, null);
         if (reply == null)
             return defValue;
 
@@ -116,7 +501,12 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     public long getLong(String key, long defValue) {
         Objects.requireNonNull(key);
 
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_LONG, key, null);
+        if (mCache != null) {
+            Object value = getCachedValue(key, METHOD_GET_LONG);
+            return value != PreferenceCache.ABSENT ? (Long) value : defValue;
+        }
+
+        Bundle reply = call(METHOD_GET_LONG, key, null);
         if (reply == null)
             return defValue;
 
@@ -127,7 +517,12 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     public float getFloat(String key, float defValue) {
         Objects.requireNonNull(key);
 
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_FLOAT, key, null);
+        if (mCache != null) {
+            Object value = getCachedValue(key, METHOD_GET_FLOAT);
+            return value != PreferenceCache.ABSENT ? (Float) value : defValue;
+        }
+
+        Bundle reply = call(METHOD_GET_FLOAT, key, null);
         if (reply == null)
             return defValue;
 
@@ -138,7 +533,12 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     public boolean getBoolean(String key, boolean defValue) {
         Objects.requireNonNull(key);
 
-        Bundle reply = mContentResolver.call(mUri, METHOD_GET_BOOLEAN, key, null);
+        if (mCache != null) {
+            Object value = getCachedValue(key, METHOD_GET_BOOLEAN);
+            return value != PreferenceCache.ABSENT ? (Boolean) value : defValue;
+        }
+
+        Bundle reply = call(METHOD_GET_BOOLEAN, key, null);
         if (reply == null)
             return defValue;
 
@@ -148,7 +548,15 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     @Override
     public boolean contains(String key) {
         Objects.requireNonNull(key);
-        Bundle reply = mContentResolver.call(mUri, METHOD_CONTAINS, key, null);
+
+        if (mCache != null) {
+            Object value = mCache.get(key);
+            if (value != PreferenceCache.NOT_CACHED) {
+                return value != PreferenceCache.ABSENT;
+            }
+        }
+
+        Bundle reply = call(METHOD_CONTAINS, key, null);
         return reply != null;
     }
 
@@ -160,12 +568,7 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
     @Override
     public void registerOnSharedPreferenceChangeListener(OnSharedPreferenceChangeListener listener) {
         synchronized (mLock) {
-            if (mListeners.isEmpty()) {
-                Bundle extras = new Bundle();
-                extras.putBinder(EXTRA_DATA, mListener.asBinder());
-                mContentResolver.call(mUri, METHOD_REGISTER_LISTENER, null, extras);
-            }
-
+            registerRemoteListener();
             mListeners.put(listener, CONTENT);
         }
     }
@@ -175,11 +578,61 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
         synchronized (mLock) {
             mListeners.remove(listener);
 
-            if (mListeners.isEmpty()) {
+            // The cached mode needs the remote listener to invalidate the cache
+            if (mListeners.isEmpty() && mCache == null && mRemoteListenerRegistered) {
+                unregisterRemoteListener();
+            }
+        }
+    }
+
+    private void registerRemoteListener() {
+        synchronized (mLock) {
+            if (!mRemoteListenerRegistered) {
                 Bundle extras = new Bundle();
                 extras.putBinder(EXTRA_DATA, mListener.asBinder());
-                mContentResolver.call(mUri, METHOD_UNREGISTER_LISTENER, null, extras);
+                Bundle reply;
+                try {
+                    reply = callOrThrow(METHOD_REGISTER_LISTENER, null, extras);
+                } catch (RemoteException e) {
+                    // Not registered, try again on the next read or registration
+                    return;
+                }
+                mRemoteListenerRegistered = true;
+
+                // Older providers do not return the token
+                IBinder token = reply != null ? reply.getBinder(EXTRA_DATA) : null;
+                if (token != null && token != mProviderToken) {
+                    if (mProviderToken != null) {
+                        mProviderToken.unlinkToDeath(mProviderDeathRecipient, 0);
+                        mProviderToken = null;
+                    }
+                    try {
+                        token.linkToDeath(mProviderDeathRecipient, 0);
+                        mProviderToken = token;
+                    } catch (RemoteException e) {
+                        // Died already, nothing is linked. The next call registers again.
+                        ContentProviderClient client;
+                        synchronized (mClientLock) {
+                            client = mClient;
+                        }
+                        onProviderDied(client);
+                    }
+                }
+            }
+        }
+    }
+
+    private void unregisterRemoteListener() {
+        synchronized (mLock) {
+            if (mProviderToken != null) {
+                mProviderToken.unlinkToDeath(mProviderDeathRecipient, 0);
+                mProviderToken = null;
             }
+
+            Bundle extras = new Bundle();
+            extras.putBinder(EXTRA_DATA, mListener.asBinder());
+            call(METHOD_UNREGISTER_LISTENER, null, extras);
+            mRemoteListenerRegistered = false;
         }
     }
 
@@ -279,11 +732,14 @@ public class MultiProcessPreference implements SharedPreferences, Handler.Callba
             mData.putStringArrayList(EXTRA_EDITOR_KEYS, mKeys);
             mData.putSerializable(EXTRA_EDITOR_VALUES, mValues);
 
-            Bundle reply = mContentResolver.call(mUri, commit ? METHOD_EDITOR_COMMIT : METHOD_EDITOR_APPLY, null, mData);
-            if (reply == null)
-                return false;
+            int generation = mCache != null ? mCache.getGeneration() : 0;
+            Bundle reply = call(commit ? METHOD_EDITOR_COMMIT : METHOD_EDITOR_APPLY, null, mData);
+            boolean result = reply != null && reply.getBoolean(EXTRA_RESULT, false);
 
-            return reply.getBoolean(EXTRA_RESULT, false);
+            if (mCache != null && (result || !commit)) {
+                mCache.patch(generation, mActions, mKeys, mValues);
+            }
+            return result;
         }
 
         @Override
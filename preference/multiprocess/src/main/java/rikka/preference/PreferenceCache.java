@@ -0,0 +1,163 @@
+package rikka.preference;
+
+import androidx.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Preferences cached by {@link MultiProcessPreference}, without anything about retrieving them.
+ * <p>
+ * Values retrieved from the provider are only stored if the cache is not invalidated in the
+ * meantime, which is checked with {@link #getGeneration()}. String sets are stored as
+ * unmodifiable copies, so they can be returned without copying.
+ */
+class PreferenceCache {
+
+    /**
+     * Returned by {@link #get(String)} if there is no such preference.
+     */
+    static final Object ABSENT = new Object();
+
+    /**
+     * Returned by {@link #get(String)} if the value must be retrieved from the provider.
+     */
+    static final Object NOT_CACHED = new Object();
+
+    private HashMap<String, Object> mValues;
+    private final HashSet<String> mStaleKeys = new HashSet<>();
+    // Increased on every invalidation, values retrieved before that are not stored
+    private int mGeneration;
+
+    synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    synchronized boolean isLoaded() {
+        return mValues != null;
+    }
+
+    /**
+     * @return The value, {@link #ABSENT} or {@link #NOT_CACHED}
+     */
+    synchronized Object get(String key) {
+        if (mValues == null || mStaleKeys.contains(key)) {
+            return NOT_CACHED;
+        }
+        return mValues.containsKey(key) ? mValues.get(key) : ABSENT;
+    }
+
+    /**
+     * @return A copy of all preferences, or null if not loaded or any of them is stale
+     */
+    @Nullable
+    synchronized Map<String, Object> getAll() {
+        if (mValues == null || !mStaleKeys.isEmpty()) {
+            return null;
+        }
+        return new HashMap<>(mValues);
+    }
+
+    /**
+     * Replace the cache with all preferences retrieved at {@code generation}.
+     *
+     * @return A copy of the preferences as stored
+     */
+    synchronized Map<String, Object> load(int generation, Map<String, ?> all) {
+        HashMap<String, Object> values = new HashMap<>();
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            values.put(entry.getKey(), freeze(entry.getValue()));
+        }
+        if (generation == mGeneration) {
+            mValues = values;
+            mStaleKeys.clear();
+            return new HashMap<>(values);
+        }
+        return values;
+    }
+
+    /**
+     * Store the value of {@code key} retrieved at {@code generation}.
+     *
+     * @param value The value, or {@link #ABSENT} if there is no such preference
+     * @return The value as stored
+     */
+    synchronized Object put(int generation, String key, Object value) {
+        value = freeze(value);
+        if (generation == mGeneration && mValues != null) {
+            if (value != ABSENT) {
+                mValues.put(key, value);
+            } else {
+                mValues.remove(key);
+            }
+            mStaleKeys.remove(key);
+        }
+        return value;
+    }
+
+    /**
+     * Mark {@code key} as changed by another process, or drop the cache if it is null.
+     */
+    synchronized void invalidate(@Nullable String key) {
+        mGeneration++;
+        if (key == null) {
+            mValues = null;
+            mStaleKeys.clear();
+        } else if (mValues != null) {
+            mStaleKeys.add(key);
+        }
+    }
+
+    /**
+     * Apply the edits of {@link MultiProcessPreference.Editor} sent at {@code generation}.
+     * <p>
+     * If the cache is invalidated in the meantime, another process may have changed the
+     * same keys after the edits, so the edited keys are invalidated instead.
+     */
+    synchronized void patch(int generation, List<String> actions, List<String> keys, List<Object> values) {
+        if (mValues == null) {
+            return;
+        }
+
+        if (generation != mGeneration) {
+            if (actions.contains("clear")) {
+                invalidate(null);
+                return;
+            }
+            for (String key : keys) {
+                invalidate(key);
+            }
+            return;
+        }
+
+        // Like SharedPreferences, clear is done first regardless of its order
+        if (actions.contains("clear")) {
+            mValues.clear();
+        }
+        for (int i = 0; i < actions.size(); i++) {
+            String action = actions.get(i);
+            String key = keys.get(i);
+            if ("clear".equals(action)) {
+                continue;
+            }
+            if ("remove".equals(action) || values.get(i) == null) {
+                mValues.remove(key);
+            } else {
+                mValues.put(key, freeze(values.get(i)));
+            }
+            mStaleKeys.remove(key);
+        }
+    }
+
+    private static Object freeze(Object value) {
+        if (value instanceof Set) {
+            //noinspection unchecked
+            return Collections.unmodifiableSet(new HashSet<>((Set<String>) value));
+        }
+        return value;
+    }
+}
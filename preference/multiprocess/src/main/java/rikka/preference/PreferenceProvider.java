@@ -8,6 +8,7 @@ import android.content.SharedPreferences;
 import android.content.pm.ProviderInfo;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.Binder;
 import android.os.Bundle;
 import android.os.RemoteCallbackList;
 import android.os.RemoteException;
@@ -15,9 +16,11 @@ import android.os.RemoteException;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
@@ -33,6 +36,7 @@ public abstract class PreferenceProvider extends ContentProvider implements Shar
     public static final String METHOD_GET_LONG = "getLong";
     public static final String METHOD_GET_FLOAT = "getFloat";
     public static final String METHOD_GET_BOOLEAN = "getBoolean";
+    public static final String METHOD_GET_MANY = "getMany";
     public static final String METHOD_CONTAINS = "contains";
     public static final String METHOD_REGISTER_LISTENER = "registerListener";
     public static final String METHOD_UNREGISTER_LISTENER = "unregisterListener";
@@ -44,8 +48,26 @@ public abstract class PreferenceProvider extends ContentProvider implements Shar
     public static final String EXTRA_EDITOR_KEYS = "editor_keys";
     public static final String EXTRA_EDITOR_VALUES = "editor_values";
 
+    public static final String EXTRA_KEYS = "keys";
+    public static final String EXTRA_TYPES = "types";
+
+    // Types of the values in the reply of getMany
+    static final int TYPE_NONE = 0;
+    static final int TYPE_STRING = 1;
+    static final int TYPE_STRING_SET = 2;
+    static final int TYPE_INT = 3;
+    static final int TYPE_LONG = 4;
+    static final int TYPE_FLOAT = 5;
+    static final int TYPE_BOOLEAN = 6;
+
     private final RemoteCallbackList<IMultiProcessPreferenceChangeListener> mListeners = new RemoteCallbackList<>();
 
+    /**
+     * Returned to clients that register a listener, so that they are notified of the death of
+     * this process with {@link android.os.IBinder#linkToDeath}.
+     */
+    private final Binder mToken = new Binder();
+
     private SharedPreferences mSharedPreferences;
     private Uri mUri;
 
@@ -133,6 +155,49 @@ public abstract class PreferenceProvider extends ContentProvider implements Shar
         }
     }
 
+    /**
+     * Get the values of many keys in one call.
+     * <p>
+     * Each value is put with its key and type in a Bundle in {@link #EXTRA_RESULT}, so that
+     * preference keys cannot collide with the keys of the reply. String sets are put as string
+     * array lists. The type of each key is in {@link #EXTRA_TYPES}, in the order of
+     * {@code keys}, so that the values can be read with the typed getters of Bundle. Keys
+     * that do not exist are not in the values.
+     */
+    public Bundle getMany(String[] keys) {
+        Map<String, ?> all = mSharedPreferences.getAll();
+        Bundle values = new Bundle();
+        int[] types = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            String key = keys[i];
+            Object value = all.get(key);
+            if (value instanceof String) {
+                values.putString(key, (String) value);
+                types[i] = TYPE_STRING;
+            } else if (value instanceof Set) {
+                //noinspection unchecked
+                values.putStringArrayList(key, new ArrayList<>((Set<String>) value));
+                types[i] = TYPE_STRING_SET;
+            } else if (value instanceof Integer) {
+                values.putInt(key, (int) value);
+                types[i] = TYPE_INT;
+            } else if (value instanceof Long) {
+                values.putLong(key, (long) value);
+                types[i] = TYPE_LONG;
+            } else if (value instanceof Float) {
+                values.putFloat(key, (float) value);
+                types[i] = TYPE_FLOAT;
+            } else if (value instanceof Boolean) {
+                values.putBoolean(key, (boolean) value);
+                types[i] = TYPE_BOOLEAN;
+            }
+        }
+        Bundle reply = new Bundle();
+        reply.putBundle(EXTRA_RESULT, values);
+        reply.putIntArray(EXTRA_TYPES, types);
+        return reply;
+    }
+
     public Bundle contains(String key) {
         if (mSharedPreferences.contains(key)) {
             return new Bundle();
@@ -148,7 +213,10 @@ public abstract class PreferenceProvider extends ContentProvider implements Shar
         synchronized (this) {
             mListeners.register(listener);
         }
-        return null;
+
+        Bundle reply = new Bundle();
+        reply.putBinder(EXTRA_DATA, mToken);
+        return reply;
     }
 
     private Bundle unregisterOnSharedPreferenceChangeListener(IMultiProcessPreferenceChangeListener listener) {
@@ -263,6 +331,9 @@ public abstract class PreferenceProvider extends ContentProvider implements Shar
             case METHOD_GET_BOOLEAN:
                 Objects.requireNonNull(arg);
                 return getBoolean(arg);
+            case METHOD_GET_MANY:
+                Objects.requireNonNull(extras);
+                return getMany(Objects.requireNonNull(extras.getStringArray(EXTRA_KEYS)));
 
             case METHOD_CONTAINS:
                 Objects.requireNonNull(arg);
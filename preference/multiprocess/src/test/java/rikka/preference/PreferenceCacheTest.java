@@ -0,0 +1,174 @@
+package rikka.preference;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PreferenceCacheTest {
+
+    private static PreferenceCache createLoadedCache() {
+        Map<String, Object> all = new HashMap<>();
+        all.put("string", "value");
+        all.put("int", 1);
+        all.put("set", new HashSet<>(Arrays.asList("a", "b")));
+
+        PreferenceCache cache = new PreferenceCache();
+        cache.load(cache.getGeneration(), all);
+        return cache;
+    }
+
+    @Test
+    public void get_beforeLoad() {
+        PreferenceCache cache = new PreferenceCache();
+        assertFalse(cache.isLoaded());
+        assertSame(PreferenceCache.NOT_CACHED, cache.get("string"));
+        assertNull(cache.getAll());
+    }
+
+    @Test
+    public void get_afterLoad() {
+        PreferenceCache cache = createLoadedCache();
+        assertTrue(cache.isLoaded());
+        assertEquals("value", cache.get("string"));
+        assertEquals(1, cache.get("int"));
+        assertSame(PreferenceCache.ABSENT, cache.get("missing"));
+        assertEquals(3, cache.getAll().size());
+    }
+
+    @Test
+    public void load_ignoredIfInvalidatedMeanwhile() {
+        PreferenceCache cache = new PreferenceCache();
+        int generation = cache.getGeneration();
+        cache.invalidate("string");
+
+        Map<String, ?> all = cache.load(generation, Collections.singletonMap("string", "old"));
+        assertEquals("old", all.get("string"));
+        assertFalse(cache.isLoaded());
+    }
+
+    @Test
+    public void invalidate_marksKeyStale() {
+        PreferenceCache cache = createLoadedCache();
+        cache.invalidate("string");
+
+        assertSame(PreferenceCache.NOT_CACHED, cache.get("string"));
+        assertEquals(1, cache.get("int"));
+        assertNull(cache.getAll());
+
+        cache.put(cache.getGeneration(), "string", "new");
+        assertEquals("new", cache.get("string"));
+        assertEquals(3, cache.getAll().size());
+    }
+
+    @Test
+    public void invalidate_nullDropsCache() {
+        PreferenceCache cache = createLoadedCache();
+        cache.invalidate(null);
+
+        assertFalse(cache.isLoaded());
+        assertSame(PreferenceCache.NOT_CACHED, cache.get("int"));
+    }
+
+    @Test
+    public void put_absentRemovesKey() {
+        PreferenceCache cache = createLoadedCache();
+        cache.invalidate("string");
+        cache.put(cache.getGeneration(), "string", PreferenceCache.ABSENT);
+
+        assertSame(PreferenceCache.ABSENT, cache.get("string"));
+        assertEquals(2, cache.getAll().size());
+    }
+
+    @Test
+    public void put_ignoredIfInvalidatedMeanwhile() {
+        PreferenceCache cache = createLoadedCache();
+        cache.invalidate("string");
+        int generation = cache.getGeneration();
+        cache.invalidate("string");
+
+        assertEquals("old", cache.put(generation, "string", "old"));
+        assertSame(PreferenceCache.NOT_CACHED, cache.get("string"));
+    }
+
+    @Test
+    public void patch_appliesClearFirst() {
+        PreferenceCache cache = createLoadedCache();
+        cache.invalidate("int");
+        cache.patch(cache.getGeneration(), Arrays.asList("putInt", "clear", "putString", "remove"),
+                Arrays.asList("int", null, "new", "new"),
+                Arrays.<Object>asList(2, null, "value", null));
+
+        Map<String, Object> all = cache.getAll();
+        assertEquals(Collections.<String, Object>singletonMap("int", 2), all);
+    }
+
+    @Test
+    public void patch_nullValueRemovesKey() {
+        PreferenceCache cache = createLoadedCache();
+        cache.patch(cache.getGeneration(), Collections.singletonList("putString"), Collections.singletonList("string"),
+                Collections.singletonList(null));
+        assertSame(PreferenceCache.ABSENT, cache.get("string"));
+    }
+
+    @Test
+    public void patch_invalidatesIfInvalidatedMeanwhile() {
+        PreferenceCache cache = createLoadedCache();
+        int generation = cache.getGeneration();
+        // Another process writes the key after our edit, and is notified before the patch
+        cache.invalidate("string");
+        cache.patch(generation, Collections.singletonList("putString"),
+                Collections.singletonList("string"), Collections.<Object>singletonList("ours"));
+
+        assertSame(PreferenceCache.NOT_CACHED, cache.get("string"));
+        assertEquals(1, cache.get("int"));
+    }
+
+    @Test
+    public void patch_clearDropsCacheIfInvalidatedMeanwhile() {
+        PreferenceCache cache = createLoadedCache();
+        int generation = cache.getGeneration();
+        cache.invalidate("int");
+        cache.patch(generation, Collections.singletonList("clear"),
+                Collections.<String>singletonList(null), Collections.singletonList(null));
+
+        assertFalse(cache.isLoaded());
+    }
+
+    @Test
+    public void patch_ignoredBeforeLoad() {
+        PreferenceCache cache = new PreferenceCache();
+        cache.patch(cache.getGeneration(), Collections.singletonList("putInt"), Collections.singletonList("int"),
+                Collections.<Object>singletonList(1));
+        assertFalse(cache.isLoaded());
+    }
+
+    @Test
+    public void stringSet_isUnmodifiableCopy() {
+        Set<String> set = new HashSet<>(Arrays.asList("a", "b"));
+        PreferenceCache cache = createLoadedCache();
+        cache.patch(cache.getGeneration(), Collections.singletonList("putStringSet"), Collections.singletonList("set"),
+                Collections.<Object>singletonList(set));
+        set.add("c");
+
+        //noinspection unchecked
+        Set<String> cached = (Set<String>) cache.get("set");
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), cached);
+        try {
+            cached.add("c");
+            fail();
+        } catch (UnsupportedOperationException ignored) {
+        }
+    }
+}